@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * A fixed set of random path queries on one graph, run one at a time by the
+ * benchmarks. The benchmark classes live in a named package (which JMH
+ * requires) and can't refer to the classes of the search toolbox, so they
+ * create this class by name and use it through the IntSupplier interface.
+ * <p>
+ * Graphs are given as "map1" and "map2" for the built-in maps, "type:n" for
+ * a map with n nodes generated by MapGenerator (for example "road:100000"),
+ * or the path to a map file or graph file.
+ *
+ * @author Li Xiao
+ */
+public class BenchmarkQueries implements IntSupplier {
+    /**
+     * Number of queries, which are repeated in the same order
+     */
+    private static final int NO_QUERIES = 1024;
+    /**
+     * Graphs already created in this JVM, by graph spec
+     */
+    private static final HashMap<String, Graph> graphs = new HashMap<String, Graph>();
+    /**
+     * Landmarks already selected in this JVM, by graph spec
+     */
+    private static final HashMap<String, Landmarks> landmarks = new HashMap<String, Landmarks>();
+    /**
+     * Contraction hierarchies already built in this JVM, by graph spec
+     */
+    private static final HashMap<String, ContractionHierarchy> hierarchies = new HashMap<String, ContractionHierarchy>();
+
+    /**
+     * The graph to search in
+     */
+    private Graph graph;
+    /**
+     * The search method, reused for all queries
+     */
+    private SearchMethod method;
+    /**
+     * Start and end node id of each query
+     */
+    private int[] starts = new int[NO_QUERIES];
+    private int[] ends = new int[NO_QUERIES];
+    /**
+     * Index of the next query to run
+     */
+    private int next = 0;
+
+    /**
+     * Creates a new set of queries.
+     *
+     * @param graphSpec  The graph to search in
+     * @param methodName Name of the search method (see SearchMethod.create), or
+     *                   "AstarLandmarks" for A-star with the ALT heuristic
+     */
+    public BenchmarkQueries(String graphSpec, String methodName) {
+        graph = getGraph(graphSpec);
+        if (methodName.equalsIgnoreCase("AstarLandmarks")) {
+            Astar astar = new Astar();
+            astar.setLandmarks(getLandmarks(graphSpec));
+            method = astar;
+        } else {
+            method = SearchMethod.create(methodName);
+        }
+        if (method == null) {
+            throw new IllegalArgumentException("Unknown search method '" + methodName + "'");
+        }
+        if (method instanceof ContractionHierarchies) {
+            //Built here, so it isn't part of the first query
+            ((ContractionHierarchies) method).setHierarchy(getHierarchy(graphSpec));
+        }
+        method.setSearchSpace(new SearchSpace());
+
+        //Same queries for every search method
+        Random rnd = new Random(graphSpec.hashCode());
+        for (int i = 0; i < NO_QUERIES; i++) {
+            starts[i] = rnd.nextInt(graph.getNodeCount());
+            ends[i] = rnd.nextInt(graph.getNodeCount());
+        }
+    }
+
+    /**
+     * Runs the next query to completion.
+     *
+     * @return Number of visited nodes plus number of path segments, so the
+     * result of the search can't be optimized away
+     */
+    public int getAsInt() {
+        method.init(graph, starts[next], ends[next]);
+        next = (next + 1) % NO_QUERIES;
+        while (!method.step()) ;
+        return method.noVisited + method.getPath().getPieces();
+    }
+
+    /**
+     * Returns the graph for a graph spec, creating it the first time it is used.
+     *
+     * @param spec The graph spec
+     * @return The graph
+     */
+    public static synchronized Graph getGraph(String spec) {
+        Graph g = graphs.get(spec);
+        if (g == null) {
+            if (spec.equalsIgnoreCase("map1")) {
+                g = new Map("1").getGraph();
+            } else if (spec.equalsIgnoreCase("map2")) {
+                g = new Map("2").getGraph();
+            } else if (spec.indexOf(':') > 0) {
+                int i = spec.indexOf(':');
+                g = MapGenerator.create(spec.substring(0, i), Integer.parseInt(spec.substring(i + 1)),
+                        MapGenerator.DEFAULT_DEGREE, MapGenerator.DEFAULT_OBSTACLES, 1).toGraph();
+            } else if (MappedGraph.isGraphFile(spec)) {
+                try {
+                    g = MappedGraph.open(spec);
+                } catch (IOException ex) {
+                    throw new IllegalArgumentException("Unable to open graph file '" + spec + "'", ex);
+                }
+            } else {
+                g = new Map(spec).getGraph();
+            }
+            graphs.put(spec, g);
+        }
+        return g;
+    }
+
+    /**
+     * Returns the landmarks for a graph spec, selecting them the first time
+     * they are used.
+     *
+     * @param spec The graph spec
+     * @return The landmarks
+     */
+    public static synchronized Landmarks getLandmarks(String spec) {
+        Landmarks lm = landmarks.get(spec);
+        if (lm == null) {
+            lm = Landmarks.select(getGraph(spec), Landmarks.DEFAULT_COUNT, Landmarks.AVOID, 1);
+            landmarks.put(spec, lm);
+        }
+        return lm;
+    }
+
+    /**
+     * Returns the contraction hierarchy for a graph spec, building it the
+     * first time it is used. The time to build it is printed, since it is not
+     * part of any benchmark.
+     *
+     * @param spec The graph spec
+     * @return The hierarchy
+     */
+    public static synchronized ContractionHierarchy getHierarchy(String spec) {
+        ContractionHierarchy ch = hierarchies.get(spec);
+        if (ch == null) {
+            long time = System.nanoTime();
+            ch = ContractionHierarchy.build(getGraph(spec));
+            time = System.nanoTime() - time;
+            System.out.println("Contraction hierarchy for " + spec + " built in " + (time / 1000000) + " ms");
+            hierarchies.put(spec, ch);
+        }
+        return ch;
+    }
+}
@@ -0,0 +1,67 @@
+package searchtoolbox.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast each search method finds paths. Each benchmark call runs
+ * one query to completion; the queries are random start and end nodes, the
+ * same for every search method on a graph.
+ * <p>
+ * Throughput and latency (sampled time per query) are measured by default.
+ * Run with <code>-prof gc</code> (the default in <code>ant bench</code>) to
+ * also get the allocation rate. Use <code>-p graph=...</code> and
+ * <code>-p method=...</code> to run a subset; the largest grids need a big
+ * heap, for example <code>-jvmArgs -Xmx8g</code>.
+ *
+ * @author Li Xiao
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    /**
+     * Name of the search method
+     */
+    @Param({"DepthFirst", "BreadthFirst", "UniformCostSearch", "GreedySearch", "Astar", "AstarLandmarks", "Bidirectional", "BidirectionalAstar"})
+    public String method;
+    /**
+     * The graph to search in (see BenchmarkQueries)
+     */
+    @Param({"map1", "map2", "grid:1000", "grid:100000", "road:1000000", "road:10000000", "geometric:100000", "scalefree:100000"})
+    public String graph;
+
+    /**
+     * The queries, run one per benchmark call
+     */
+    private IntSupplier queries;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        //The toolbox classes are in the default package and can only be reached by name
+        queries = (IntSupplier) Class.forName("BenchmarkQueries")
+                .getConstructor(String.class, String.class)
+                .newInstance(graph, method);
+    }
+
+    @Benchmark
+    public int search() {
+        return queries.getAsInt();
+    }
+}
@@ -1,19 +1,66 @@
-import java.util.Vector;
-
 /**
- * This is where you implement the A-star search algorithm.
- * It currently has a Depth-First search implementation.
+ * This is the implementation of the A-star search algorithm for
+ * pathfinding.
  *
  * @author Li Xiao
  */
 public class Astar extends SearchMethod {
     /**
-     * Initializes a new A-star search.
+     * Open list as a priority queue ordered by estimated total cost
+     */
+    private NodeHeap queue;
+    /**
+     * Landmarks used to estimate the cost to the end node, null to only use
+     * the cost function of the graph
+     */
+    private Landmarks landmarks;
+    /**
+     * Graph the landmarks were last checked against, so a graph used for
+     * many searches is only checked once
+     */
+    private Graph checkedGraph;
+
+    /**
+     * Creates a new A-star search. Call init() to start a search.
      */
     public Astar() {
-        //Must be called to reset all variables and
-        //data structures needed for the search.
-        init();
+    }
+
+    /**
+     * Sets the landmarks to estimate the cost to the end node with (the ALT
+     * heuristic), together with the cost function of the graph. Must be
+     * called before init().
+     *
+     * @param landmarks The landmarks, or null to use the cost function
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        if (landmarks != this.landmarks) {
+            checkedGraph = null;
+        }
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     * @throws IllegalArgumentException if the landmarks were selected for another graph
+     */
+    public void init(Graph graph, int start, int end) {
+        if (landmarks != null && graph != checkedGraph) {
+            if (!landmarks.matches(graph)) {
+                throw new IllegalArgumentException("The landmarks were selected for another graph");
+            }
+            checkedGraph = graph;
+        }
+        super.init(graph, start, end);
+
+        //Add start node to open list
+        queue = space.getHeap(true);
+        space.open(start, -1, -1, 0);
+        queue.add(start, heuristic(start));
     }
 
     /**
@@ -22,16 +69,21 @@ public class Astar extends SearchMethod {
      * @return True when the search is ready, false if not ready.
      */
     public boolean step() {
+        //No path exists if the open list runs out of nodes
+        if (queue.isEmpty()) {
+            return true;
+        }
+
         //Visit (expand) the best node in the open list
-        Node n = getNextToVisit();
-        map.setLinkAsVisited(n);
+        int n = getNextToVisit();
+        setLinkAsVisited(n);
         //Move the visited node to the closed list
-        closed.add(n);
+        space.close(n);
         //Increase the visited counter
         noVisited++;
 
         //Check if we are finished = current node equals end node
-        if (n.equals(end)) {
+        if (n == end) {
             //Goal node reached!
             path = reconstructPath(n);
             return true;
@@ -39,15 +91,25 @@ public class Astar extends SearchMethod {
             //Not finished yet. Keep iterating.
 
             //Find the nodes that are connected to the current node n
-            Vector<Node> connected = getConnectedNodes(n);
-            for (Node c : connected) {
-                //If a node is not in the open or closed lists, add it
-                //to the open list
-                if (!isInOpenOrClosed(c)) {
-                    //Set the parent reference
-                    c.parent = n;
-                    //Add first in the open list (LIFO)
-                    open.add(0, c);
+            for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+                int c = graph.getOutTarget(e);
+                //The actual cost is the cost of the parent plus the link
+                double actual = space.getActual(n) + graph.getOutWeight(e);
+
+                byte state = space.getState(c);
+                if (state == SearchSpace.UNSEEN) {
+                    //Set the parent reference and add to the open list. Among
+                    //nodes with equal estimated cost, the last added is
+                    //visited first (LIFO).
+                    space.open(c, n, e, actual);
+                    queue.add(c, heuristic(c));
+                } else if (state == SearchSpace.OPEN && actual < space.getActual(c)) {
+                    //Found a cheaper path to a node in the open list. Set the
+                    //new parent and lower the estimate in the open list. Nodes
+                    //in the closed list already have their cheapest path, since
+                    //the heuristic is consistent (see heuristic()).
+                    space.open(c, n, e, actual);
+                    queue.decreaseKey(c, heuristic(c));
                 }
             }
         }
@@ -56,62 +118,40 @@ public class Astar extends SearchMethod {
     }
 
     /**
-     * Returns the best node in the open list. This is where you implement
-     * logic for finding the best node in the open list.
+     * Returns the best node in the open list, which is the node with the lowest
+     * estimated total cost (actual cost plus heuristic). The estimate is
+     * calculated when a node is added, and lowered when a cheaper path to the
+     * node is found.
      *
      * @return The best node in the open list
      */
-    private Node getNextToVisit() {
-        //Pick first node...
-        Node bestNode = open.elementAt(0);
-        double minLen = heuristic(bestNode, end);
-
-        for (Node node : open) {
-            double len = heuristic(node, end);
-
-            if (len < minLen) {
-                minLen = len;
-                bestNode = node;
-            }
-        }
-
-        open.remove(bestNode);
-
-        return bestNode;
+    private int getNextToVisit() {
+        return queue.poll();
     }
 
     /**
-     * Calculates the length (Euclidean distance) between two nodes using
-     * Pythagoras theorem.
+     * Calculates the estimated total cost of a path through a node to the end node.
+     * This is the actual cost of the node plus the estimated cost from the node to
+     * the end node, given by the map's cost function (Euclidean distance by default).
+     * If landmarks are set, the highest of their lower bound and the cost function
+     * is used.
+     * <p>
+     * The landmark bounds are always consistent, and so is the cost function when
+     * every link weight is at least the cost function between its nodes, as for
+     * links without an explicit weight. The highest of consistent estimates is
+     * consistent too, so a visited node already has its cheapest path. On maps
+     * with explicit weights lower than the cost function, the estimate can be too
+     * high, and A-star may then find a path that is not the shortest.
      *
-     * @param a The first node
-     * @param b The second node
-     * @return The distance between the nodes
+     * @param n The node id
+     * @return The estimated total cost
      */
-    private double heuristic(Node a, Node b) {
-        if (a == null || b == null)
-            return 0;
-        double sqX = Math.pow(b.x - a.x, 2);
-        double sqY = Math.pow(b.y - a.y, 2);
-        double lenToGoal = Math.sqrt(sqX + sqY);
-
-        calculateActualCost(a);
-
-        return lenToGoal + a.actual;
-    }
+    private double heuristic(int n) {
+        double lenToGoal = graph.getCost(n, end);
+        if (landmarks != null) {
+            lenToGoal = Math.max(lenToGoal, landmarks.getLowerBound(n, end));
+        }
 
-    /**
-     * Calculates the actual cost (path length) of going from the start node
-     * to the specified node. Use it when calculating the best node in the
-     * open list.
-     *
-     * @param n The current node
-     */
-    private void calculateActualCost(Node n) {
-        //Reconstruct the path by traversing the parent references from the
-        //current node to the start node
-        Path path = reconstructPath(n);
-        //Set the actual cost to the length of the reconstructed path
-        n.actual = path.getLength();
+        return lenToGoal + space.getActual(n);
     }
 }
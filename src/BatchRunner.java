@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Locale;
+
+/**
+ * Runs path queries on a map without the GUI. Each search is run to completion
+ * without any rendering or waiting between steps.
+ * <p>
+ * Usage: <code>java BatchRunner &lt;map&gt; [queries]</code>
+ * <p>
+ * The map is "1" or "2" for the built-in maps, otherwise the path to a map file
+ * or a binary graph file. Graph files are searched directly from the memory
+ * mapped file, without loading them into a Map. The ContractionHierarchy
+ * search method uses the contraction hierarchy saved next to the map (see
+ * ContractionHierarchy), or builds it before its first query. The time to
+ * build it is printed on a line of its own, starting with #, and is not part
+ * of the time of any query.
+ * Queries are read from the queries file, or from standard input if no file is
+ * given. Each query is a line with the start node label, the end node label and
+ * the name of the search method (see SearchMethod.create), separated by spaces.
+ * Empty lines and lines starting with # are skipped. For each query one line is
+ * printed with the path length, number of path segments, number of visited
+ * nodes and the time the search took.
+ * <p>
+ * The end of a query for the OneToMany method can be several node labels
+ * separated by commas. All of them are found in one search, and one line is
+ * printed for each, with the visited nodes and time of the whole search.
+ *
+ * @author Li Xiao
+ */
+public class BatchRunner {
+    /**
+     * The graph to search in
+     */
+    private Graph graph;
+    /**
+     * Search space shared by the queries, which are run one after another
+     */
+    private SearchSpace space = new SearchSpace();
+    /**
+     * Contraction hierarchy of the graph, null until it is read or built
+     */
+    private ContractionHierarchy hierarchy;
+
+    /**
+     * Creates a new batch runner and loads a map.
+     *
+     * @param mapID The map to load: "1" or "2" for the built-in maps, otherwise
+     *              the path to a map file or graph file
+     * @throws IOException if a graph file or hierarchy file can't be read
+     */
+    public BatchRunner(String mapID) throws IOException {
+        if (MappedGraph.isGraphFile(mapID)) {
+            graph = MappedGraph.open(mapID);
+        } else {
+            graph = new Map(mapID).getGraph();
+        }
+        if (new File(mapID + ContractionHierarchy.EXTENSION).isFile()) {
+            hierarchy = ContractionHierarchy.read(mapID + ContractionHierarchy.EXTENSION, graph);
+        }
+    }
+
+    /**
+     * Returns the contraction hierarchy of the graph, building it and printing
+     * the time it took the first time it is needed.
+     *
+     * @return The hierarchy
+     */
+    public ContractionHierarchy getHierarchy() {
+        if (hierarchy == null) {
+            long time = System.nanoTime();
+            hierarchy = ContractionHierarchy.build(graph);
+            time = System.nanoTime() - time;
+            System.out.println(String.format(Locale.ROOT, "# ContractionHierarchy build shortcuts=%d time=%.3fms",
+                    hierarchy.getShortcutCount(), time / 1000000.0));
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Finds a path between two nodes.
+     *
+     * @param startLabel Label of the start node
+     * @param endLabel   Label of the end node
+     * @param methodName Name of the search method
+     * @return The result of the search
+     * @throws IllegalArgumentException if a node or the search method is not found
+     */
+    public SearchResult search(String startLabel, String endLabel, String methodName) {
+        int start = graph.findNode(startLabel);
+        if (start < 0) {
+            throw new IllegalArgumentException("Unable to find node with label '" + startLabel + "'");
+        }
+        int end = graph.findNode(endLabel);
+        if (end < 0) {
+            throw new IllegalArgumentException("Unable to find node with label '" + endLabel + "'");
+        }
+        SearchMethod method = SearchMethod.create(methodName);
+        if (method == null) {
+            throw new IllegalArgumentException("Unknown search method '" + methodName + "'");
+        }
+
+        if (method instanceof ContractionHierarchies) {
+            ((ContractionHierarchies) method).setHierarchy(getHierarchy());
+        }
+
+        method.setSearchSpace(space);
+        method.init(graph, start, end);
+        return SearchResult.run(method);
+    }
+
+    /**
+     * Finds the paths from a node to several nodes in one one-to-many search.
+     *
+     * @param startLabel Label of the start node
+     * @param endLabels  Labels of the end nodes
+     * @return The result for each end node. The visited nodes and time are
+     * those of the whole search.
+     * @throws IllegalArgumentException if a node is not found
+     */
+    public SearchResult[] searchMany(String startLabel, String[] endLabels) {
+        int start = graph.findNode(startLabel);
+        if (start < 0) {
+            throw new IllegalArgumentException("Unable to find node with label '" + startLabel + "'");
+        }
+        int[] ends = new int[endLabels.length];
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = graph.findNode(endLabels[i]);
+            if (ends[i] < 0) {
+                throw new IllegalArgumentException("Unable to find node with label '" + endLabels[i] + "'");
+            }
+        }
+
+        OneToManySearch method = new OneToManySearch();
+        method.setSearchSpace(space);
+        method.init(graph, start, ends, Double.POSITIVE_INFINITY);
+        SearchResult all = SearchResult.run(method);
+        SearchResult[] r = new SearchResult[ends.length];
+        for (int i = 0; i < ends.length; i++) {
+            r[i] = new SearchResult();
+            r[i].path = method.getPath(i);
+            r[i].noVisited = all.noVisited;
+            r[i].time = all.time;
+        }
+        return r;
+    }
+
+    /**
+     * Runs all queries read from a reader and prints the results.
+     *
+     * @param in The queries
+     * @throws IOException if the queries can't be read
+     */
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) continue;
+
+            String[] tokens = line.split("\\s+");
+            if (tokens.length != 3) {
+                System.out.println(line + " error=expected <start> <end> <method>");
+                continue;
+            }
+
+            try {
+                if (tokens[2].equalsIgnoreCase("OneToMany")) {
+                    String[] endLabels = tokens[1].split(",");
+                    SearchResult[] r = searchMany(tokens[0], endLabels);
+                    for (int i = 0; i < r.length; i++) {
+                        print(tokens[0], endLabels[i], tokens[2], r[i]);
+                    }
+                } else {
+                    print(tokens[0], tokens[1], tokens[2], search(tokens[0], tokens[1], tokens[2]));
+                }
+            } catch (IllegalArgumentException ex) {
+                System.out.println(line + " error=" + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Prints the result of a query.
+     */
+    private static void print(String startLabel, String endLabel, String methodName, SearchResult r) {
+        String length = r.path.path.isEmpty() ? "none" : String.format(Locale.ROOT, "%.2f", r.path.getLength());
+        System.out.println(String.format(Locale.ROOT, "%s %s %s length=%s segments=%d visited=%d time=%.3fms",
+                startLabel, endLabel, methodName, length, r.path.getPieces(), r.noVisited, r.time / 1000000.0));
+    }
+
+    /**
+     * @param args The map, and optionally a file with queries
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java BatchRunner <map> [queries]");
+            System.exit(1);
+        }
+
+        try {
+            BatchRunner runner = new BatchRunner(args[0]);
+            BufferedReader in;
+            if (args.length == 2) {
+                in = new BufferedReader(new FileReader(args[1]));
+            } else {
+                in = new BufferedReader(new InputStreamReader(System.in));
+            }
+            try {
+                runner.run(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
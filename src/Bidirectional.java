@@ -1,33 +1,93 @@
-import java.util.Vector;
-
 /**
  * This is the implementation of the Bi-directional Search algorithm for
  * pathfinding.
+ * <p>
+ * Two uniform-cost searches run at the same time, one forward from the start
+ * node and one backward from the end node. Each step visits one node in the
+ * search with the lowest cost in its open list. When a search reaches a node
+ * the other search has reached, the path through that node is a candidate,
+ * and the cost of the best candidate is kept. The best candidate is the
+ * shortest path once the lowest costs in both open lists add up to at least
+ * its cost, since no path through an unvisited node can be shorter.
+ * <p>
+ * As bidirectional A-star, both searches add a potential to the cost of a
+ * node: half the estimated cost from the node to the end node minus half the
+ * estimated cost from the start node to the node for the forward search, and
+ * the negation of that for the backward search. The potentials are consistent
+ * when the estimates are, so the path found is still the shortest, but fewer
+ * nodes are visited.
+ * <p>
+ * The backward search follows the links out of each node, so links are
+ * assumed to go both ways with the same weight, as they do in maps.
  *
  * @author Johan Hagelbäck
  */
 public class Bidirectional extends SearchMethod {
-    private Vector<Node> open_fwd;
-    private Vector<Node> closed_fwd;
-    private Vector<Node> open_bwd;
-    private Vector<Node> closed_bwd;
+    private NodeHeap open_fwd;
+    private NodeHeap open_bwd;
+    /**
+     * Search state of the backward search. The forward search uses the
+     * search space of the base class.
+     */
+    private SearchSpace space_bwd;
+    /**
+     * True if the searches use A-star potentials
+     */
+    private boolean astar;
+    /**
+     * Cost of the best path found so far, and the node where the searches met
+     * on it (-1 if none)
+     */
+    private double best;
+    private int meet;
 
     /**
-     * Initializes a new Bi-directional Search.
+     * Creates a new Bi-directional Search. Call init() to start a search.
      */
     public Bidirectional() {
-        //Must be called to reset all variables and
-        //data structures needed for the search.
-        init();
+        this(false);
+    }
 
-        open_fwd = new Vector<Node>();
-        closed_fwd = new Vector<Node>();
-        open_bwd = new Vector<Node>();
-        closed_bwd = new Vector<Node>();
+    /**
+     * Creates a new Bi-directional Search. Call init() to start a search.
+     *
+     * @param astar True for bidirectional A-star, false for bidirectional
+     *              uniform-cost search
+     */
+    public Bidirectional(boolean astar) {
+        this.astar = astar;
+    }
+
+    /**
+     * Initializes a new search. Resets the forward and backward open and
+     * closed lists as well, so that a new search always starts from the
+     * specified start and end nodes.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        super.init(graph, start, end);
+
+        if (space_bwd == null) {
+            space_bwd = new SearchSpace();
+        }
+        space_bwd.reset(graph.getNodeCount());
+        open_fwd = space.getHeap(false);
+        open_bwd = space_bwd.getHeap(false);
 
         //Add start nodes
-        open_fwd.add(start.clone());
-        open_bwd.add(end.clone());
+        space.open(start, -1, -1, 0);
+        open_fwd.add(start, potential(start));
+        space_bwd.open(end, -1, -1, 0);
+        open_bwd.add(end, -potential(end));
+        best = Double.POSITIVE_INFINITY;
+        meet = -1;
+        if (start == end) {
+            best = 0;
+            meet = start;
+        }
     }
 
     /**
@@ -36,69 +96,111 @@ public class Bidirectional extends SearchMethod {
      * @return True when the search is ready, false if not ready.
      */
     public boolean step() {
-        step(open_fwd, closed_fwd);
-        step(open_bwd, closed_bwd);
-
-        //Check if the searches have met
-        for (Node n_fwd : closed_fwd) {
-            for (Node n_bwd : closed_bwd) {
-                if (n_fwd.equals(n_bwd)) {
-                    //The searches have met!
-                    //Generate the path and stop the search
-                    Path path_fwd = reconstructPath(n_fwd);
-                    Path path_bwd = reconstructPath(n_bwd);
-                    path_fwd.showPathLinks();
-                    path_bwd.showPathLinks();
-
-                    //Merge the two paths
-                    path = path_fwd;
-                    for (int i = path_bwd.path.size() - 2; i >= 0; i--) {
-                        path.addLast(path_bwd.path.elementAt(i));
-                    }
-                    //Recalculate the path length since it won't
-                    //be correct after the merge.
-                    path.recalculateLength();
-
-                    return true;
-                }
+        //The potentials of a node in the two searches add up to zero, so no
+        //path through an unvisited node is shorter than the best path once
+        //the lowest costs in the open lists add up to at least its cost.
+        //Empty open lists have infinite cost, so this also stops when no
+        //path exists.
+        double fwd = open_fwd.peekPriority();
+        double bwd = open_bwd.peekPriority();
+        if (fwd + bwd >= best) {
+            if (meet >= 0) {
+                //The searches have met!
+                //Generate the path and stop the search
+                path = buildPath();
             }
+            return true;
         }
 
+        if (fwd <= bwd) {
+            step(open_fwd, space, space_bwd, 1);
+        } else {
+            step(open_bwd, space_bwd, space, -1);
+        }
         return false;
     }
 
-    private void step(Vector<Node> cOpen, Vector<Node> cClosed) {
-        //Step the forward search
-        Node n = cOpen.remove(0);
-        map.setLinkAsVisited(n);
+    /**
+     * Visits the next node in one of the searches.
+     *
+     * @param cOpen  Open list of the search
+     * @param cSpace Search space of the search
+     * @param oSpace Search space of the other search
+     * @param sign   1 for the forward search, -1 for the backward search
+     */
+    private void step(NodeHeap cOpen, SearchSpace cSpace, SearchSpace oSpace, int sign) {
+        int n = cOpen.poll();
+        setLinkAsVisited(cSpace, n);
         //Move the visited node to the closed list
-        cClosed.add(n);
+        cSpace.close(n);
         //Increase the visited counter
         noVisited++;
 
         //Find the nodes that are connected to the current node n
-        Vector<Node> connected = getConnectedNodes(n);
-        for (Node c : connected) {
-            //If a node is not in the open or closed lists, add it
-            //to the open list
-            if (!isInOpenOrClosed(c, cOpen, cClosed)) {
-                //Set the parent reference
-                c.parent = n;
-                //Add last in the open list (FIFO)
-                cOpen.add(c);
+        for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+            int c = graph.getOutTarget(e);
+            double actual = cSpace.getActual(n) + graph.getOutWeight(e);
+
+            byte state = cSpace.getState(c);
+            if (state == SearchSpace.UNSEEN) {
+                cSpace.open(c, n, e, actual);
+                cOpen.add(c, actual + sign * potential(c));
+            } else if (state == SearchSpace.OPEN && actual < cSpace.getActual(c)) {
+                //Found a cheaper path to a node in the open list
+                cSpace.open(c, n, e, actual);
+                cOpen.decreaseKey(c, actual + sign * potential(c));
+            } else {
+                continue;
+            }
+
+            //Check if the other search has reached the node
+            if (!oSpace.isUnseen(c) && actual + oSpace.getActual(c) < best) {
+                best = actual + oSpace.getActual(c);
+                meet = c;
             }
         }
     }
 
-    private boolean isInOpenOrClosed(Node n, Vector<Node> cOpen, Vector<Node> cClosed) {
-        for (Node c : cOpen) {
-            if (c.equals(n)) return true;
-        }
+    /**
+     * Returns the potential of a node in the forward search. The potential in
+     * the backward search is the negation.
+     *
+     * @param n The node id
+     * @return The potential, 0 if A-star potentials are not used
+     */
+    private double potential(int n) {
+        if (!astar) return 0;
+        return (graph.getCost(n, end) - graph.getCost(start, n)) / 2;
+    }
 
-        for (Node c : cClosed) {
-            if (c.equals(n)) return true;
+    /**
+     * Builds the path through the node where the searches met, from the
+     * parent references of both searches.
+     *
+     * @return The path
+     */
+    private Path buildPath() {
+        //Nodes from the meeting node to the end node
+        int[] nodes = new int[16];
+        int noNodes = 0;
+        for (int n = meet; n >= 0; n = space_bwd.getParent(n)) {
+            if (noNodes == nodes.length) {
+                int[] tmp = new int[noNodes * 2];
+                System.arraycopy(nodes, 0, tmp, 0, noNodes);
+                nodes = tmp;
+            }
+            nodes[noNodes++] = n;
         }
 
-        return false;
+        //Nodes are added first in the path, so add from the end node back
+        //to the meeting node and then back to the start node
+        Path path = new Path(graph);
+        for (int i = noNodes - 1; i > 0; i--) {
+            path.add(graph.getNode(nodes[i]));
+        }
+        for (int n = meet; n >= 0; n = space.getParent(n)) {
+            path.add(graph.getNode(n));
+        }
+        return path;
     }
 }
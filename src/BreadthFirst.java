@@ -1,5 +1,3 @@
-import java.util.Vector;
-
 /**
  * This is the implementation of the Breadth-First Search algorithm for
  * pathfinding.
@@ -8,12 +6,30 @@ import java.util.Vector;
  */
 public class BreadthFirst extends SearchMethod {
     /**
-     * Initializes a new Breadth-First Search.
+     * Open list
+     */
+    private NodeQueue open;
+
+    /**
+     * Creates a new Breadth-First Search. Call init() to start a search.
      */
     public BreadthFirst() {
-        //Must be called to reset all variables and
-        //data structures needed for the search.
-        init();
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        super.init(graph, start, end);
+
+        //Add start node to open list
+        open = space.getQueue();
+        space.open(start, -1, -1, 0);
+        open.add(start);
     }
 
     /**
@@ -22,16 +38,21 @@ public class BreadthFirst extends SearchMethod {
      * @return True when the search is ready, false if not ready.
      */
     public boolean step() {
+        //No path exists if the open list runs out of nodes
+        if (open.isEmpty()) {
+            return true;
+        }
+
         //Visit (expand) the first node in the open list
-        Node n = open.remove(0);
-        map.setLinkAsVisited(n);
+        int n = open.pollFirst();
+        setLinkAsVisited(n);
         //Move the visited node to the closed list
-        closed.add(n);
+        space.close(n);
         //Increase the visited counter
         noVisited++;
 
         //Check if we are finished = current node equals end node
-        if (n.equals(end)) {
+        if (n == end) {
             //Goal node reached!
             path = reconstructPath(n);
             return true;
@@ -39,13 +60,13 @@ public class BreadthFirst extends SearchMethod {
             //Not finished yet. Keep iterating.
 
             //Find the nodes that are connected to the current node n
-            Vector<Node> connected = getConnectedNodes(n);
-            for (Node c : connected) {
+            for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+                int c = graph.getOutTarget(e);
                 //If a node is not in the open or closed lists, add it
                 //to the open list
-                if (!isInOpenOrClosed(c)) {
+                if (space.isUnseen(c)) {
                     //Set the parent reference
-                    c.parent = n;
+                    space.open(c, n, e, space.getActual(n) + graph.getOutWeight(e));
                     //Add last in the open list (FIFO)
                     open.add(c);
                 }
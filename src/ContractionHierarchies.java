@@ -0,0 +1,218 @@
+/**
+ * This is the implementation of path queries on a contraction hierarchy
+ * (see ContractionHierarchy).
+ * <p>
+ * Two uniform-cost searches run from the start node and from the end node.
+ * Both only follow links to nodes of higher rank, so they stay in a small
+ * part of the graph. The forward search follows the links going up from each
+ * node, and the backward search follows the links coming down to each node in
+ * reverse. The shortest path is through the node where the summed cost of
+ * both searches is lowest, which is known when neither search has a node left
+ * with a lower cost than the best path found. The links of the path are then
+ * unpacked to the original links of the graph.
+ * <p>
+ * The hierarchy is built or read beforehand and set with setHierarchy(), so
+ * the time to build it is not part of the time of a search.
+ *
+ * @author Li Xiao
+ */
+public class ContractionHierarchies extends SearchMethod {
+    private NodeHeap open_fwd;
+    private NodeHeap open_bwd;
+    /**
+     * Search state of the backward search. The forward search uses the
+     * search space of the base class. Parent links are links in the hierarchy.
+     */
+    private SearchSpace space_bwd;
+    /**
+     * The hierarchy to search in
+     */
+    private ContractionHierarchy hierarchy;
+    /**
+     * Cost of the best path found so far, and the node where the searches met
+     * on it (-1 if none)
+     */
+    private double best;
+    private int meet;
+
+    /**
+     * Creates a new contraction hierarchy search. Call init() to start a search.
+     */
+    public ContractionHierarchies() {
+    }
+
+    /**
+     * Sets the hierarchy to search in. Must be called before init().
+     *
+     * @param hierarchy The hierarchy of the graph given to init()
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     * @throws IllegalArgumentException if no hierarchy is set or it was built for another graph
+     */
+    public void init(Graph graph, int start, int end) {
+        if (hierarchy == null) {
+            throw new IllegalArgumentException("No contraction hierarchy is set for the search");
+        }
+        if (!hierarchy.matches(graph)) {
+            throw new IllegalArgumentException("The hierarchy was built for another graph");
+        }
+        super.init(graph, start, end);
+
+        if (space_bwd == null) {
+            space_bwd = new SearchSpace();
+        }
+        space_bwd.reset(graph.getNodeCount());
+        open_fwd = space.getHeap(false);
+        open_bwd = space_bwd.getHeap(false);
+
+        //Add start nodes
+        space.open(start, -1, -1, 0);
+        open_fwd.add(start, 0);
+        space_bwd.open(end, -1, -1, 0);
+        open_bwd.add(end, 0);
+        best = Double.POSITIVE_INFINITY;
+        meet = -1;
+        if (start == end) {
+            best = 0;
+            meet = start;
+        }
+    }
+
+    /**
+     * Finds a path from start to end node. Each step visits one node, in the
+     * search with the lowest cost in its open list.
+     *
+     * @return True when the search is ready, false if not ready.
+     */
+    public boolean step() {
+        //Neither search can find a shorter path once both open lists only
+        //have nodes with a cost of at least the best path. Empty open lists
+        //have infinite cost, so this also stops when no path exists.
+        double fwd = open_fwd.peekPriority();
+        double bwd = open_bwd.peekPriority();
+        if (Math.min(fwd, bwd) >= best) {
+            if (meet >= 0) {
+                path = buildPath();
+            }
+            return true;
+        }
+
+        if (fwd <= bwd) {
+            step(open_fwd, space, space_bwd, true);
+        } else {
+            step(open_bwd, space_bwd, space, false);
+        }
+        return false;
+    }
+
+    /**
+     * Visits the next node in one of the searches.
+     *
+     * @param cOpen    Open list of the search
+     * @param cSpace   Search space of the search
+     * @param oSpace   Search space of the other search
+     * @param forward  True for the forward search, false for the backward search
+     */
+    private void step(NodeHeap cOpen, SearchSpace cSpace, SearchSpace oSpace, boolean forward) {
+        int n = cOpen.poll();
+        showLinkAsVisited(cSpace, n);
+        //Move the visited node to the closed list
+        cSpace.close(n);
+        //Increase the visited counter
+        noVisited++;
+
+        int first = forward ? hierarchy.getUpOffset(n) : hierarchy.getDownOffset(n);
+        int last = forward ? hierarchy.getUpOffset(n + 1) : hierarchy.getDownOffset(n + 1);
+        for (int i = first; i < last; i++) {
+            int e = forward ? hierarchy.getUpEdge(i) : hierarchy.getDownEdge(i);
+            int c = forward ? hierarchy.getEdgeTo(e) : hierarchy.getEdgeFrom(e);
+            double actual = cSpace.getActual(n) + hierarchy.getEdgeWeight(e);
+
+            byte state = cSpace.getState(c);
+            if (state == SearchSpace.UNSEEN) {
+                cSpace.open(c, n, e, actual);
+                cOpen.add(c, actual);
+            } else if (state == SearchSpace.OPEN && actual < cSpace.getActual(c)) {
+                cSpace.open(c, n, e, actual);
+                cOpen.decreaseKey(c, actual);
+            } else {
+                continue;
+            }
+
+            //Check if the other search has reached the node
+            if (!oSpace.isUnseen(c) && actual + oSpace.getActual(c) < best) {
+                best = actual + oSpace.getActual(c);
+                meet = c;
+            }
+        }
+    }
+
+    /**
+     * Shows the original links replaced by the link from the parent of a
+     * node to the node as visited in the GUI.
+     *
+     * @param s The search space holding the parent reference
+     * @param n The node id
+     */
+    private void showLinkAsVisited(SearchSpace s, int n) {
+        int e = s.getParentLink(n);
+        if (e >= 0 && listener != null) {
+            for (int link : hierarchy.unpack(e)) {
+                listener.linkVisited(link);
+            }
+        }
+    }
+
+    /**
+     * Builds the path through the node where the searches met, by unpacking
+     * the links from the start node to the meeting node and from the meeting
+     * node to the end node.
+     *
+     * @return The path
+     */
+    private Path buildPath() {
+        //Links of the hierarchy on the path, from the end node back to the
+        //start node. The backward search finds them from the meeting node
+        //towards the end node, so they are reversed.
+        int[] edges = new int[16];
+        int noEdges = 0;
+        for (int n = meet; space_bwd.getParent(n) >= 0; n = space_bwd.getParent(n)) {
+            if (noEdges == edges.length) edges = grow(edges);
+            edges[noEdges++] = space_bwd.getParentLink(n);
+        }
+        for (int i = 0, j = noEdges - 1; i < j; i++, j--) {
+            int t = edges[i];
+            edges[i] = edges[j];
+            edges[j] = t;
+        }
+        for (int n = meet; space.getParent(n) >= 0; n = space.getParent(n)) {
+            if (noEdges == edges.length) edges = grow(edges);
+            edges[noEdges++] = space.getParentLink(n);
+        }
+
+        Path path = new Path(graph);
+        path.add(graph.getNode(end));
+        for (int i = 0; i < noEdges; i++) {
+            int[] links = hierarchy.unpack(edges[i]);
+            for (int j = links.length - 1; j >= 0; j--) {
+                path.add(graph.getNode(hierarchy.getEdgeFrom(links[j])));
+            }
+        }
+        return path;
+    }
+
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
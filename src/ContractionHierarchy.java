@@ -0,0 +1,800 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Contraction hierarchy of a graph, used by the ContractionHierarchies search
+ * method to answer path queries on a graph that does not change.
+ * <p>
+ * The nodes are contracted one at a time, in an order chosen by how few links
+ * contracting a node adds. Contracting a node removes it from the remaining
+ * graph, and adds a shortcut link between two of its neighbors if the path
+ * through the node is the only shortest path between them. The rank of a node
+ * is its position in the contraction order. A shortest path between any two
+ * nodes then goes up in rank from the start node and down in rank to the end
+ * node, using the original links and the shortcuts, so a search only has to
+ * follow links to nodes of higher rank from both ends.
+ * <p>
+ * Each shortcut remembers the two links it replaces, so paths are unpacked to
+ * the original links of the graph. Hierarchies are saved to a file next to the
+ * map (the map file name followed by ".ch"), with a fingerprint of the graph
+ * like landmarks (see Landmarks).
+ *
+ * @author Li Xiao
+ */
+public class ContractionHierarchy {
+    /**
+     * Identifies a hierarchy file, "STBC" in little-endian order
+     */
+    public static final int MAGIC = 0x43425453;
+    /**
+     * Version of the hierarchy file format
+     */
+    public static final int VERSION = 1;
+    /**
+     * Added to the map file name to get the hierarchy file name
+     */
+    public static final String EXTENSION = ".ch";
+    private static final int HEADER_SIZE = 64;
+    /**
+     * Most nodes a witness search settles before it gives up and a shortcut
+     * is added, when contracting a node and when only counting the shortcuts
+     * to find the priority of a node
+     */
+    private static final int WITNESS_LIMIT = 200;
+    private static final int PRIORITY_WITNESS_LIMIT = 20;
+
+    /**
+     * Number of nodes and links in the graph
+     */
+    private final int noNodes;
+    private final int noLinks;
+    /**
+     * Fingerprint of the graph the hierarchy was built for
+     */
+    private final long fingerprint;
+    /**
+     * Position of each node in the contraction order
+     */
+    private final int[] rank;
+    /**
+     * The links of the hierarchy: the original links first, in the same
+     * order as in the graph, followed by the shortcuts. For shortcuts, the
+     * two links the shortcut replaces.
+     */
+    private int noEdges;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private double[] edgeWeight;
+    private int[] edgeFirst;
+    private int[] edgeSecond;
+    /**
+     * The links going up in rank from each node, as compressed sparse rows
+     */
+    private int[] upOffset;
+    private int[] upEdge;
+    /**
+     * The links coming down in rank to each node, as compressed sparse rows.
+     * Searches backwards from the end node follow these in reverse.
+     */
+    private int[] downOffset;
+    private int[] downEdge;
+
+    private ContractionHierarchy(int noNodes, int noLinks, long fingerprint, int[] rank) {
+        this.noNodes = noNodes;
+        this.noLinks = noLinks;
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+    }
+
+    /**
+     * Checks if the hierarchy can be used for a graph, by the number of nodes
+     * and links. Reading a hierarchy also compares the fingerprint.
+     *
+     * @param graph The graph
+     * @return True if the hierarchy can be used for the graph, false otherwise
+     */
+    public boolean matches(Graph graph) {
+        return graph.getNodeCount() == noNodes && graph.getLinkCount() == noLinks;
+    }
+
+    /**
+     * Returns the number of nodes in the graph the hierarchy was built for.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return noNodes;
+    }
+
+    /**
+     * Returns the number of shortcuts added by the contraction.
+     *
+     * @return Number of shortcuts
+     */
+    public int getShortcutCount() {
+        return noEdges - noLinks;
+    }
+
+    /**
+     * Returns the index of the first link going up in rank from a node. The
+     * links of node id are the indices from getUpOffset(id) up to, but not
+     * including, getUpOffset(id + 1).
+     *
+     * @param id The node id (or the number of nodes)
+     * @return Index of the first link
+     */
+    public int getUpOffset(int id) {
+        return upOffset[id];
+    }
+
+    /**
+     * Returns a link going up in rank.
+     *
+     * @param i Index of the link, from getUpOffset()
+     * @return The link in the hierarchy
+     */
+    public int getUpEdge(int i) {
+        return upEdge[i];
+    }
+
+    /**
+     * Returns the index of the first link coming down in rank to a node, in
+     * the same way as getUpOffset().
+     *
+     * @param id The node id (or the number of nodes)
+     * @return Index of the first link
+     */
+    public int getDownOffset(int id) {
+        return downOffset[id];
+    }
+
+    /**
+     * Returns a link coming down in rank.
+     *
+     * @param i Index of the link, from getDownOffset()
+     * @return The link in the hierarchy
+     */
+    public int getDownEdge(int i) {
+        return downEdge[i];
+    }
+
+    /**
+     * Returns the node a link in the hierarchy goes from.
+     *
+     * @param edge The link in the hierarchy
+     * @return The node id
+     */
+    public int getEdgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    /**
+     * Returns the node a link in the hierarchy goes to.
+     *
+     * @param edge The link in the hierarchy
+     * @return The node id
+     */
+    public int getEdgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    /**
+     * Returns the weight of a link in the hierarchy.
+     *
+     * @param edge The link in the hierarchy
+     * @return The weight
+     */
+    public double getEdgeWeight(int edge) {
+        return edgeWeight[edge];
+    }
+
+    /**
+     * Unpacks a link in the hierarchy to the original links of the graph.
+     *
+     * @param edge The link in the hierarchy
+     * @return The indices of the original links, in path order
+     */
+    public int[] unpack(int edge) {
+        int[] links = new int[4];
+        int count = 0;
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = edge;
+        while (top > 0) {
+            int e = stack[--top];
+            if (e < noLinks) {
+                if (count == links.length) {
+                    int[] l = new int[count * 2];
+                    System.arraycopy(links, 0, l, 0, count);
+                    links = l;
+                }
+                links[count++] = e;
+            } else {
+                if (top + 2 > stack.length) {
+                    int[] s = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, s, 0, top);
+                    stack = s;
+                }
+                //The first half is unpacked first, so it is pushed last
+                stack[top++] = edgeSecond[e];
+                stack[top++] = edgeFirst[e];
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(links, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Contracts a graph. This can take a while on large graphs, so callers
+     * build the hierarchy once, outside the searches they time, and give it
+     * to each search with ContractionHierarchies.setHierarchy().
+     *
+     * @param graph The graph
+     * @return The hierarchy
+     */
+    public static ContractionHierarchy build(Graph graph) {
+        int n = graph.getNodeCount();
+        ContractionHierarchy ch = new ContractionHierarchy(n, graph.getLinkCount(), Landmarks.fingerprint(graph), new int[n]);
+        new Contraction(ch, graph).run();
+        ch.buildSearchGraph();
+        return ch;
+    }
+
+    /**
+     * Adds a link to the hierarchy.
+     *
+     * @return The link index
+     */
+    private int addEdge(int from, int to, double weight, int first, int second) {
+        if (noEdges == edgeFrom.length) {
+            int size = noEdges * 2;
+            edgeFrom = grow(edgeFrom, size);
+            edgeTo = grow(edgeTo, size);
+            edgeFirst = grow(edgeFirst, size);
+            edgeSecond = grow(edgeSecond, size);
+            double[] w = new double[size];
+            System.arraycopy(edgeWeight, 0, w, 0, noEdges);
+            edgeWeight = w;
+        }
+        edgeFrom[noEdges] = from;
+        edgeTo[noEdges] = to;
+        edgeWeight[noEdges] = weight;
+        edgeFirst[noEdges] = first;
+        edgeSecond[noEdges] = second;
+        return noEdges++;
+    }
+
+    private static int[] grow(int[] a, int size) {
+        int[] b = new int[size];
+        System.arraycopy(a, 0, b, 0, Math.min(a.length, size));
+        return b;
+    }
+
+    /**
+     * Sorts the links into the links going up in rank from each node, and
+     * the links coming down in rank to each node. Links between nodes of the
+     * same rank (links from a node to itself) can't be on a shortest path
+     * and are left out.
+     */
+    private void buildSearchGraph() {
+        upOffset = new int[noNodes + 1];
+        downOffset = new int[noNodes + 1];
+        for (int e = 0; e < noEdges; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                upOffset[edgeFrom[e] + 1]++;
+            } else if (rank[edgeTo[e]] < rank[edgeFrom[e]]) {
+                downOffset[edgeTo[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < noNodes; i++) {
+            upOffset[i + 1] += upOffset[i];
+            downOffset[i + 1] += downOffset[i];
+        }
+        upEdge = new int[upOffset[noNodes]];
+        downEdge = new int[downOffset[noNodes]];
+        int[] nextUp = new int[noNodes];
+        int[] nextDown = new int[noNodes];
+        System.arraycopy(upOffset, 0, nextUp, 0, noNodes);
+        System.arraycopy(downOffset, 0, nextDown, 0, noNodes);
+        for (int e = 0; e < noEdges; e++) {
+            if (rank[edgeTo[e]] > rank[edgeFrom[e]]) {
+                upEdge[nextUp[edgeFrom[e]]++] = e;
+            } else if (rank[edgeTo[e]] < rank[edgeFrom[e]]) {
+                downEdge[nextDown[edgeTo[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * State used while a graph is contracted.
+     */
+    private static class Contraction {
+        private final ContractionHierarchy ch;
+        private final int n;
+        /**
+         * Links to and from each node, including shortcuts, between nodes
+         * that are not yet contracted
+         */
+        private int[][] out;
+        private int[] noOut;
+        private int[][] in;
+        private int[] noIn;
+        /**
+         * Number of contracted neighbors of each node
+         */
+        private int[] deleted;
+        /**
+         * Upper bound of the number of links on a path of shortcuts down
+         * from each node, which keeps the hierarchy flat
+         */
+        private int[] level;
+        /**
+         * Nodes not yet contracted, ordered by priority
+         */
+        private NodeHeap queue = new NodeHeap();
+        /**
+         * Witness search state. Only the nodes in touched have a cost set.
+         */
+        private NodeHeap witnessQueue = new NodeHeap();
+        private double[] dist;
+        private int[] touched;
+        private int noTouched = 0;
+        /**
+         * Marks the neighbors a witness search looks for with the number of
+         * the search, so it can stop when all of them are settled
+         */
+        private int[] targetMark;
+        private int witnessNo = 0;
+        /**
+         * Shortcuts found by the last call to findShortcuts(): the link to
+         * the contracted node and the link from it, for each shortcut
+         */
+        private int[] shortcutIn = new int[16];
+        private int[] shortcutOut = new int[16];
+        private int noShortcuts;
+
+        Contraction(ContractionHierarchy ch, Graph graph) {
+            this.ch = ch;
+            this.n = graph.getNodeCount();
+            int m = graph.getLinkCount();
+            ch.edgeFrom = new int[Math.max(16, m * 2)];
+            ch.edgeTo = new int[ch.edgeFrom.length];
+            ch.edgeWeight = new double[ch.edgeFrom.length];
+            ch.edgeFirst = new int[ch.edgeFrom.length];
+            ch.edgeSecond = new int[ch.edgeFrom.length];
+
+            out = new int[n][];
+            in = new int[n][];
+            noOut = new int[n];
+            noIn = new int[n];
+            for (int a = 0; a < n; a++) {
+                out[a] = new int[Math.max(2, graph.getOutOffset(a + 1) - graph.getOutOffset(a))];
+                in[a] = new int[2];
+            }
+            //The original links get the same indices as in the graph
+            for (int a = 0; a < n; a++) {
+                for (int e = graph.getOutOffset(a); e < graph.getOutOffset(a + 1); e++) {
+                    int b = graph.getOutTarget(e);
+                    ch.addEdge(a, b, graph.getOutWeight(e), -1, -1);
+                    if (a != b) {
+                        addOut(a, e);
+                        addIn(b, e);
+                    }
+                }
+            }
+            deleted = new int[n];
+            level = new int[n];
+            dist = new double[n];
+            touched = new int[n];
+            targetMark = new int[n];
+            for (int i = 0; i < n; i++) {
+                dist[i] = Double.POSITIVE_INFINITY;
+            }
+            queue.reset(n, false);
+            witnessQueue.reset(n, false);
+        }
+
+        private void addOut(int a, int e) {
+            if (noOut[a] == out[a].length) out[a] = grow(out[a], noOut[a] * 2);
+            out[a][noOut[a]++] = e;
+        }
+
+        private void addIn(int b, int e) {
+            if (noIn[b] == in[b].length) in[b] = grow(in[b], noIn[b] * 2);
+            in[b][noIn[b]++] = e;
+        }
+
+        /**
+         * Contracts all nodes, lowest priority first. The priority of a node
+         * is only updated when it is next to be contracted, and the node is
+         * put back if it no longer has the lowest priority.
+         */
+        void run() {
+            for (int v = 0; v < n; v++) {
+                queue.add(v, priority(v));
+            }
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                double p = priority(v);
+                if (!queue.isEmpty() && p > queue.peekPriority()) {
+                    queue.add(v, p);
+                    continue;
+                }
+                contract(v);
+                ch.rank[v] = next++;
+            }
+        }
+
+
+        /**
+         * Returns the priority of a node: the number of links contracting it
+         * would add minus the number it would remove, plus the number of
+         * contracted neighbors and the level of the node, which spread the
+         * contraction evenly.
+         */
+        private double priority(int v) {
+            findShortcuts(v, PRIORITY_WITNESS_LIMIT);
+            return 2 * (noShortcuts - noIn[v] - noOut[v]) + deleted[v] + level[v];
+        }
+
+        /**
+         * Contracts a node, adding the shortcuts needed between its neighbors.
+         */
+        private void contract(int v) {
+            findShortcuts(v, WITNESS_LIMIT);
+            for (int i = 0; i < noShortcuts; i++) {
+                int e1 = shortcutIn[i];
+                int e2 = shortcutOut[i];
+                int a = ch.edgeFrom[e1];
+                int b = ch.edgeTo[e2];
+                double w = ch.edgeWeight[e1] + ch.edgeWeight[e2];
+                //A shortcut replaces a longer link between the same nodes
+                int old = findOut(a, b);
+                if (old >= 0) {
+                    if (ch.edgeWeight[old] <= w) continue;
+                    remove(out, noOut, a, old);
+                    remove(in, noIn, b, old);
+                }
+                int e = ch.addEdge(a, b, w, e1, e2);
+                addOut(a, e);
+                addIn(b, e);
+            }
+
+            //Only links between nodes not yet contracted are kept in the lists
+            int[] vIn = in[v];
+            int[] vOut = out[v];
+            int vNoIn = noIn[v];
+            int vNoOut = noOut[v];
+            in[v] = null;
+            out[v] = null;
+            noIn[v] = 0;
+            noOut[v] = 0;
+            for (int i = 0; i < vNoIn; i++) {
+                int a = ch.edgeFrom[vIn[i]];
+                deleted[a]++;
+                level[a] = Math.max(level[a], level[v] + 1);
+                remove(out, noOut, a, vIn[i]);
+            }
+            for (int i = 0; i < vNoOut; i++) {
+                int b = ch.edgeTo[vOut[i]];
+                deleted[b]++;
+                level[b] = Math.max(level[b], level[v] + 1);
+                remove(in, noIn, b, vOut[i]);
+            }
+        }
+
+        /**
+         * Returns the link from node a to node b in the lists, -1 if none.
+         */
+        private int findOut(int a, int b) {
+            for (int i = 0; i < noOut[a]; i++) {
+                if (ch.edgeTo[out[a][i]] == b) return out[a][i];
+            }
+            return -1;
+        }
+
+        /**
+         * Removes a link from the list of a node.
+         */
+        private void remove(int[][] lists, int[] sizes, int node, int e) {
+            int[] list = lists[node];
+            for (int i = 0; i < sizes[node]; i++) {
+                if (list[i] == e) {
+                    list[i] = list[--sizes[node]];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Finds the shortcuts needed if a node is contracted: for each pair of
+         * a link to the node and a link from it, unless there is another path
+         * (a witness) between the neighbors that is not longer.
+         *
+         * @param v     The node
+         * @param limit Most nodes each witness search settles
+         */
+        private void findShortcuts(int v, int limit) {
+            noShortcuts = 0;
+            for (int i = 0; i < noIn[v]; i++) {
+                int e1 = in[v][i];
+                int a = ch.edgeFrom[e1];
+                if (!isLowest(in[v], noIn[v], i, true)) continue;
+
+                //Longest path through v from a, which bounds the witness search
+                double max = Double.NEGATIVE_INFINITY;
+                int noTargets = 0;
+                witnessNo++;
+                for (int j = 0; j < noOut[v]; j++) {
+                    int e2 = out[v][j];
+                    int b = ch.edgeTo[e2];
+                    if (b == a) continue;
+                    max = Math.max(max, ch.edgeWeight[e1] + ch.edgeWeight[e2]);
+                    if (targetMark[b] != witnessNo) {
+                        targetMark[b] = witnessNo;
+                        noTargets++;
+                    }
+                }
+                if (noTargets == 0) continue;
+
+                witnessSearch(a, v, max, noTargets, limit);
+                for (int j = 0; j < noOut[v]; j++) {
+                    int e2 = out[v][j];
+                    int b = ch.edgeTo[e2];
+                    if (b == a || !isLowest(out[v], noOut[v], j, false)) continue;
+                    if (dist[b] > ch.edgeWeight[e1] + ch.edgeWeight[e2]) {
+                        if (noShortcuts == shortcutIn.length) {
+                            shortcutIn = grow(shortcutIn, noShortcuts * 2);
+                            shortcutOut = grow(shortcutOut, noShortcuts * 2);
+                        }
+                        shortcutIn[noShortcuts] = e1;
+                        shortcutOut[noShortcuts] = e2;
+                        noShortcuts++;
+                    }
+                }
+                clearWitness();
+            }
+        }
+
+        /**
+         * Checks if a link has the lowest weight of the links in a list
+         * between the same two nodes, so parallel links only give one shortcut.
+         */
+        private boolean isLowest(int[] list, int size, int i, boolean sameFrom) {
+            int e = list[i];
+            for (int j = 0; j < size; j++) {
+                int f = list[j];
+                boolean same = sameFrom ? ch.edgeFrom[f] == ch.edgeFrom[e] : ch.edgeTo[f] == ch.edgeTo[e];
+                if (same && (ch.edgeWeight[f] < ch.edgeWeight[e] || (ch.edgeWeight[f] == ch.edgeWeight[e] && j < i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Finds the lowest costs from a node to its neighbors without going
+         * through the node being contracted, up to a maximum cost. The search
+         * stops when all neighbors marked as targets are settled.
+         */
+        private void witnessSearch(int source, int skip, double max, int noTargets, int limit) {
+            dist[source] = 0;
+            touched[noTouched++] = source;
+            witnessQueue.add(source, 0);
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && witnessQueue.peekPriority() <= max && settled < limit) {
+                int a = witnessQueue.poll();
+                settled++;
+                if (targetMark[a] == witnessNo && --noTargets == 0) break;
+                for (int i = 0; i < noOut[a]; i++) {
+                    int e = out[a][i];
+                    int b = ch.edgeTo[e];
+                    if (b == skip) continue;
+                    double d = dist[a] + ch.edgeWeight[e];
+                    if (d < dist[b]) {
+                        if (dist[b] == Double.POSITIVE_INFINITY) {
+                            touched[noTouched++] = b;
+                            witnessQueue.add(b, d);
+                        } else if (witnessQueue.contains(b)) {
+                            witnessQueue.decreaseKey(b, d);
+                        } else {
+                            continue;
+                        }
+                        dist[b] = d;
+                    }
+                }
+            }
+        }
+
+        private void clearWitness() {
+            for (int i = 0; i < noTouched; i++) {
+                dist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+            noTouched = 0;
+            witnessQueue.reset(n, false);
+        }
+    }
+
+    /**
+     * Reads a hierarchy from a hierarchy file.
+     *
+     * @param filename The hierarchy file
+     * @param graph    The graph the hierarchy is used for
+     * @return The hierarchy
+     * @throws IOException if the file can't be read, is not a hierarchy file of a supported
+     *                     version, or the hierarchy was built for another graph
+     */
+    public static ContractionHierarchy read(String filename, Graph graph) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel ch = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("'" + filename + "' is not a hierarchy file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported hierarchy file version " + header.getInt(4) + " in '" + filename + "'");
+            }
+            int noNodes = header.getInt(8);
+            int noLinks = header.getInt(12);
+            int noEdges = header.getInt(16);
+            long fingerprint = header.getLong(24);
+            if (noNodes != graph.getNodeCount() || noLinks != graph.getLinkCount() || fingerprint != Landmarks.fingerprint(graph)) {
+                throw new IOException("The hierarchy in '" + filename + "' was built for another map");
+            }
+            if (HEADER_SIZE + 4L * noNodes + 24L * noEdges > ch.size()) {
+                throw new IOException("Hierarchy file '" + filename + "' is truncated");
+            }
+
+            ContractionHierarchy h = new ContractionHierarchy(noNodes, noLinks, fingerprint, new int[noNodes]);
+            h.noEdges = noEdges;
+            h.edgeFrom = new int[noEdges];
+            h.edgeTo = new int[noEdges];
+            h.edgeWeight = new double[noEdges];
+            h.edgeFirst = new int[noEdges];
+            h.edgeSecond = new int[noEdges];
+            long pos = HEADER_SIZE;
+            pos = readInts(ch, pos, h.rank, noNodes);
+            pos = readInts(ch, pos, h.edgeFrom, noEdges);
+            pos = readInts(ch, pos, h.edgeTo, noEdges);
+            pos = readInts(ch, pos, h.edgeFirst, noEdges);
+            pos = readInts(ch, pos, h.edgeSecond, noEdges);
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < noEdges; ) {
+                int k = Math.min(noEdges - i, buf.capacity() / 8);
+                buf.clear().limit(k * 8);
+                readFully(ch, buf, pos);
+                buf.asDoubleBuffer().get(h.edgeWeight, i, k);
+                pos += k * 8L;
+                i += k;
+            }
+            h.buildSearchGraph();
+            return h;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the hierarchy to a hierarchy file.
+     *
+     * @param filename The hierarchy file
+     * @throws IOException if the file can't be written
+     */
+    public void write(String filename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            file.setLength(0);
+            FileChannel ch = file.getChannel();
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            buf.putInt(noNodes);
+            buf.putInt(noLinks);
+            buf.putInt(noEdges);
+            buf.putInt(0);
+            buf.putLong(fingerprint);
+            buf.position(HEADER_SIZE);
+            buf = putInts(ch, buf, rank, noNodes);
+            buf = putInts(ch, buf, edgeFrom, noEdges);
+            buf = putInts(ch, buf, edgeTo, noEdges);
+            buf = putInts(ch, buf, edgeFirst, noEdges);
+            buf = putInts(ch, buf, edgeSecond, noEdges);
+            for (int e = 0; e < noEdges; e++) {
+                if (buf.remaining() < 8) buf = flush(ch, buf);
+                buf.putDouble(edgeWeight[e]);
+            }
+            flush(ch, buf);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads a file from a position until the buffer is full, and rewinds it.
+     */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+        buf.rewind();
+    }
+
+    /**
+     * Reads ints from a file position, in blocks.
+     *
+     * @return The file position after the ints
+     */
+    private static long readInts(FileChannel ch, long pos, int[] values, int count) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; ) {
+            int k = Math.min(count - i, buf.capacity() / 4);
+            buf.clear().limit(k * 4);
+            readFully(ch, buf, pos);
+            buf.asIntBuffer().get(values, i, k);
+            pos += k * 4L;
+            i += k;
+        }
+        return pos;
+    }
+
+    private static ByteBuffer putInts(FileChannel ch, ByteBuffer buf, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (buf.remaining() < 4) buf = flush(ch, buf);
+            buf.putInt(values[i]);
+        }
+        return buf;
+    }
+
+    /**
+     * Writes the contents of the buffer to the file and empties it.
+     */
+    private static ByteBuffer flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Contracts a map and saves the hierarchy next to the map file.
+     * <p>
+     * Usage: <code>java ContractionHierarchy &lt;map&gt;</code>
+     *
+     * @param args The map file
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java ContractionHierarchy <map>");
+            System.exit(1);
+        }
+        String mapID = args[0];
+
+        try {
+            if (!new File(mapID).exists()) {
+                throw new IOException("Unable to find map file '" + mapID + "'");
+            }
+            Graph graph = MappedGraph.isGraphFile(mapID) ? MappedGraph.open(mapID, true) : new Map(mapID).getGraph();
+            long time = System.nanoTime();
+            ContractionHierarchy ch = build(graph);
+            time = System.nanoTime() - time;
+            ch.write(mapID + EXTENSION);
+            System.out.println("Contracted " + ch.getNodeCount() + " nodes with " + ch.getShortcutCount()
+                    + " shortcuts in " + (time / 1000000) + " ms");
+        } catch (Exception ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Calculates the cost of going between two nodes. The map uses it to calculate
+ * the weight of each link that has no explicit weight in the map file, and
+ * the informed search methods use it to estimate the remaining cost to the
+ * end node.
+ *
+ * @author Li Xiao
+ */
+public interface EdgeCostFunction {
+    /**
+     * Cost is the Euclidean distance between the nodes. This is default.
+     */
+    EdgeCostFunction EUCLIDEAN = new EdgeCostFunction() {
+        public double getCost(Node a, Node b) {
+            return getCost(a.x, a.y, b.x, b.y);
+        }
+
+        public double getCost(int ax, int ay, int bx, int by) {
+            double dx = bx - ax;
+            double dy = by - ay;
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+    };
+
+    /**
+     * Cost is the Manhattan (city block) distance between the nodes.
+     */
+    EdgeCostFunction MANHATTAN = new EdgeCostFunction() {
+        public double getCost(Node a, Node b) {
+            return getCost(a.x, a.y, b.x, b.y);
+        }
+
+        public double getCost(int ax, int ay, int bx, int by) {
+            return Math.abs(bx - ax) + Math.abs(by - ay);
+        }
+    };
+
+    /**
+     * Calculates the cost of going from node a to node b.
+     *
+     * @param a The first node
+     * @param b The second node
+     * @return The cost
+     */
+    double getCost(Node a, Node b);
+
+    /**
+     * Calculates the cost of going from one position to another. Used where
+     * the positions are known without creating Node objects for them.
+     *
+     * @param ax x-coordinate of the first position
+     * @param ay y-coordinate of the first position
+     * @param bx x-coordinate of the second position
+     * @param by y-coordinate of the second position
+     * @return The cost
+     */
+    double getCost(int ax, int ay, int bx, int by);
+}
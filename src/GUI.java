@@ -1,6 +1,9 @@
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
@@ -11,7 +14,24 @@ import java.util.Vector;
  *
  * @author Johan Hagelbäck
  */
-public class GUI extends JPanel implements ActionListener, Runnable, MouseMotionListener, MouseListener {
+public class GUI extends JPanel implements ActionListener, Runnable, MouseMotionListener, MouseListener, MouseWheelListener, ChangeListener {
+    /**
+     * Time between two frames while a search is running, in milliseconds
+     */
+    private static final int FRAME_DELAY = 1000 / 60;
+    /**
+     * Most visited links drawn in one frame
+     */
+    private static final int FRAME_LINKS = 16384;
+    /**
+     * Factor the map is zoomed by for each step of the mouse wheel
+     */
+    private static final double ZOOM_STEP = 1.25;
+    /**
+     * Distance in pixels from the center of a node at which it can be clicked
+     */
+    private static final int CLICK_RADIUS = 8;
+    private Map map;
     private MapPanel mPanel;
     private JPanel bPanel;
     private JPopupMenu pp;
@@ -24,6 +44,26 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
     private JSlider speed;
     private JButton[] buttons;
     private Node toMove = null;
+    /**
+     * Last mouse position while the map is dragged to pan it, null when not
+     * panning
+     */
+    private Point panFrom = null;
+    /**
+     * Time to wait after each step of a search, in milliseconds. Set from
+     * the speed slider and read by the search thread.
+     */
+    private volatile int delay;
+    /**
+     * The graph searched by the running search
+     */
+    private Graph searchGraph;
+    /**
+     * Progress of the running search, drawn by the frame timer
+     */
+    private StepQueue steps;
+    private Timer frameTimer;
+    private int[] frameLinks = new int[FRAME_LINKS];
 
     /**
      * Creates the GUI.
@@ -34,6 +74,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         format.setMinimumFractionDigits(0);
         format.setMaximumFractionDigits(2);
 
+        map = new Map();
         method = new DepthFirst();
         initComponents();
     }
@@ -42,14 +83,14 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
      * Initializes all GUI components.
      */
     private void initComponents() {
-        setLayout(new FlowLayout());
+        setLayout(new BorderLayout());
 
         bPanel = new JPanel();
         bPanel.setPreferredSize(new Dimension(180, 400));
         bPanel.setLayout(new FlowLayout());
 
         //Buttons
-        buttons = new JButton[6];
+        buttons = new JButton[7];
         buttons[0] = new JButton("Depth-First Search");
         buttons[0].setActionCommand("DepthFirstSearch");
         buttons[0].setOpaque(true);
@@ -81,6 +122,11 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         buttons[5].addActionListener(this);
         buttons[5].setPreferredSize(new Dimension(160, 25));
         bPanel.add(buttons[5]);
+        buttons[6] = new JButton("IDA-star");
+        buttons[6].setActionCommand("IDAstar");
+        buttons[6].addActionListener(this);
+        buttons[6].setPreferredSize(new Dimension(160, 25));
+        bPanel.add(buttons[6]);
 
         activateButton(0);
 
@@ -88,11 +134,16 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         jp.setPreferredSize(new Dimension(160, 15));
         bPanel.add(jp);
 
-        speed = new JSlider(JSlider.HORIZONTAL, 10, 300, 100);
+        speed = new JSlider(JSlider.HORIZONTAL, 0, 300, 100);
         speed.setToolTipText("Speed");
         speed.setPreferredSize(new Dimension(160, 35));
+        speed.addChangeListener(this);
+        delay = speed.getValue();
         bPanel.add(speed);
 
+        frameTimer = new Timer(FRAME_DELAY, this);
+        frameTimer.setActionCommand("Frame");
+
         JButton bt;
         bt = new JButton("Run");
         bt.setPreferredSize(new Dimension(160, 25));
@@ -118,16 +169,18 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         pieceLabel.setPreferredSize(new Dimension(160, 20));
         bPanel.add(pieceLabel);
 
-        add(bPanel);
+        add(bPanel, BorderLayout.WEST);
 
-        mPanel = new MapPanel();
-        add(mPanel);
+        mPanel = new MapPanel(map);
+        mPanel.showMap();
+        add(mPanel, BorderLayout.CENTER);
 
         //Popup menu
         pp = new JPopupMenu();
 
         mPanel.addMouseListener(this);
         mPanel.addMouseMotionListener(this);
+        mPanel.addMouseWheelListener(this);
     }
 
     /**
@@ -144,26 +197,38 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
 
     /**
      * Called when the mouse is dragged in the GUI.
-     * Used the the user move nodes around in the map.
+     * Used the the user move nodes around in the map, or pan the map.
      *
      * @param e mouse event
      */
     public void mouseDragged(MouseEvent e) {
+        Viewport view = mPanel.getViewport();
         if (toMove != null) {
-            int eX = e.getX();
-            int eY = e.getY();
+            int nX = (int) Math.round(view.toMapX(e.getX()));
+            int nY = (int) Math.round(view.toMapY(e.getY()));
 
-            int nX = (int) Math.round((double) eX / 10.0);
-            int nY = (int) Math.round((double) eY / 10.0);
+            map.moveNode(toMove, nX, nY);
 
-            toMove.x = nX;
-            toMove.y = nY;
-
-            mPanel.updateUI();
+            mPanel.repaint();
+        } else if (panFrom != null) {
+            view.pan(e.getX() - panFrom.x, e.getY() - panFrom.y);
+            panFrom = e.getPoint();
             mPanel.repaint();
         }
     }
 
+    /**
+     * Called when the mouse wheel is turned in the GUI.
+     * Used to zoom the map around the mouse position.
+     *
+     * @param e mouse wheel event
+     */
+    public void mouseWheelMoved(MouseWheelEvent e) {
+        double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+        mPanel.getViewport().zoom(factor, e.getX(), e.getY());
+        mPanel.repaint();
+    }
+
     /**
      * Unused mouse handler methods.
      */
@@ -186,6 +251,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
      */
     public void mouseReleased(MouseEvent e) {
         toMove = null;
+        panFrom = null;
     }
 
     /**
@@ -196,25 +262,17 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
      */
     public void mousePressed(MouseEvent e) {
         //See if a node has been clicked
-        Vector<Node> nodes = Map.getInstance().getNodes();
-
-        Node node = null;
+        Viewport view = mPanel.getViewport();
+        Node node = map.findNodeAt(view.toMapX(e.getX()), view.toMapY(e.getY()), CLICK_RADIUS / view.getScale());
         toMove = null;
-        for (Node n : nodes) {
-            float nX = (float) (n.x * 10);
-            float nY = (float) (n.y * 10);
-
-            float dist = (float) Math.sqrt(Math.pow(nX - e.getX(), 2) + Math.pow(nY - e.getY(), 2));
-            if (dist <= 8) {
-                node = n;
-                break;
-            }
-        }
+        panFrom = null;
 
         //Left mouse button: move nodes around
         if (SwingUtilities.isLeftMouseButton(e)) {
             if (node != null) {
                 toMove = node;
+            } else {
+                panFrom = e.getPoint();
             }
         }
 
@@ -241,8 +299,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 //Show the default popup menu
                 pp.removeAll();
                 JMenuItem mi = new JMenuItem("Add Node");
-                int x = (int) Math.round((double) e.getX() / 10.0);
-                int y = (int) Math.round((double) e.getY() / 10.0);
+                int x = (int) Math.round(view.toMapX(e.getX()));
+                int y = (int) Math.round(view.toMapY(e.getY()));
                 mi.setActionCommand("AddNode " + x + " " + y);
                 mi.addActionListener(this);
                 pp.add(mi);
@@ -259,6 +317,20 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 mi.addActionListener(this);
                 pp.add(mi);
 
+                mi = new JMenuItem("Select Landmarks");
+                mi.setActionCommand("Landmarks");
+                mi.addActionListener(this);
+                pp.add(mi);
+
+                mi = new JMenuItem("Zoom to Fit");
+                mi.setActionCommand("ZoomFit");
+                mi.addActionListener(this);
+                pp.add(mi);
+                mi = new JMenuItem("Default Zoom");
+                mi.setActionCommand("ZoomDefault");
+                mi.addActionListener(this);
+                pp.add(mi);
+
                 mi = new JMenuItem("Reload Map");
                 mi.setActionCommand("Reload");
                 mi.addActionListener(this);
@@ -295,7 +367,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(0);
 
                 method = new DepthFirst();
-                mPanel.updateUI();
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -308,7 +380,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(1);
 
                 method = new BreadthFirst();
-                mPanel.updateUI();
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -321,7 +393,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(2);
 
                 method = new UniformCostSearch();
-                mPanel.updateUI();
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -334,7 +406,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(3);
 
                 method = new Bidirectional();
-                mPanel.updateUI();
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -347,7 +419,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(4);
 
                 method = new GreedySearch();
-                mPanel.updateUI();
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -360,7 +432,20 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 activateButton(5);
 
                 method = new Astar();
-                mPanel.updateUI();
+                map.resetLinks();
+                mPanel.repaint();
+                visitedLabel.setText("Visited: " + method.noVisited);
+                lengthLabel.setText("Path length: 0");
+                pieceLabel.setText("Path pieces: 0");
+            }
+        }
+        /* IDA-star is selected */
+        if (cmd.equalsIgnoreCase("IDAstar")) {
+            if (!running) {
+                activateButton(6);
+
+                method = new IDAstar(SearchMethod.IDA_TABLE_SIZE);
+                map.resetLinks();
                 mPanel.repaint();
                 visitedLabel.setText("Visited: " + method.noVisited);
                 lengthLabel.setText("Path length: 0");
@@ -370,16 +455,18 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         /* A search for a path is started */
         if (cmd.equalsIgnoreCase("Run")) {
             if (!running) {
-                Thread thr = new Thread(this);
-                thr.start();
+                startSearch();
             }
         }
+        /* Shows the progress of the running search */
+        if (cmd.equalsIgnoreCase("Frame")) {
+            drawFrame();
+        }
         /* Change start node in the map */
         if (cmd.startsWith("Start:")) {
             if (!running) {
                 String[] tokens = cmd.split(":");
-                Map.getInstance().setAsStartNode(tokens[1]);
-                mPanel.updateUI();
+                map.setAsStartNode(tokens[1]);
                 mPanel.repaint();
             }
         }
@@ -387,8 +474,7 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         if (cmd.startsWith("End:")) {
             if (!running) {
                 String[] tokens = cmd.split(":");
-                Map.getInstance().setAsEndNode(tokens[1]);
-                mPanel.updateUI();
+                map.setAsEndNode(tokens[1]);
                 mPanel.repaint();
             }
         }
@@ -396,9 +482,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         if (cmd.startsWith("Remove:")) {
             if (!running) {
                 String[] tokens = cmd.split(":");
-                boolean ok = Map.getInstance().removeNode(tokens[1]);
+                boolean ok = map.removeNode(tokens[1]);
                 if (ok) {
-                    mPanel.updateUI();
                     mPanel.repaint();
                 }
             }
@@ -407,9 +492,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         if (cmd.startsWith("RemoveLink:")) {
             if (!running) {
                 String[] tokens = cmd.split(":");
-                boolean ok = Map.getInstance().removeLink(tokens[1]);
+                boolean ok = map.removeLink(tokens[1]);
                 if (ok) {
-                    mPanel.updateUI();
                     mPanel.repaint();
                 }
             }
@@ -421,19 +505,17 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 int x = Integer.parseInt(tokens[1]);
                 int y = Integer.parseInt(tokens[2]);
 
-                String str = Map.getInstance().getNewNodeLabel();
+                String str = map.getNewNodeLabel();
                 if (!str.equals("0")) {
-                    boolean ok = Map.getInstance().addNode(x, y, str);
+                    boolean ok = map.addNode(x, y, str);
                     if (ok) {
-                        mPanel.updateUI();
                         mPanel.repaint();
                     }
                 } else {
                     str = JOptionPane.showInputDialog(null, "Enter node label", "", 1);
                     if (str != null && !str.equals("")) {
-                        boolean ok = Map.getInstance().addNode(x, y, str);
+                        boolean ok = map.addNode(x, y, str);
                         if (ok) {
-                            mPanel.updateUI();
                             mPanel.repaint();
                         }
                     }
@@ -445,9 +527,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
             if (!running) {
                 String str = JOptionPane.showInputDialog(null, "Enter node label", "", 1);
                 if (str != null && !str.equals("")) {
-                    boolean ok = Map.getInstance().removeNode(str);
+                    boolean ok = map.removeNode(str);
                     if (ok) {
-                        mPanel.updateUI();
                         mPanel.repaint();
                     } else {
                         JOptionPane.showMessageDialog(null, "Unable to find node with label '" + str + "'", "Error", JOptionPane.WARNING_MESSAGE);
@@ -463,9 +544,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                     String n2 = JOptionPane.showInputDialog(null, "Enter node 2 label", "", 1);
                     if (n2 != null && !n2.equals("")) {
                         String label = n1 + "-" + n2;
-                        boolean ok = Map.getInstance().removeLink(label);
+                        boolean ok = map.removeLink(label);
                         if (ok) {
-                            mPanel.updateUI();
                             mPanel.repaint();
                         } else {
                             JOptionPane.showMessageDialog(null, "Unable to find link '" + label + "'", "Error", JOptionPane.WARNING_MESSAGE);
@@ -481,9 +561,8 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
                 if (n1 != null && !n1.equals("")) {
                     String n2 = JOptionPane.showInputDialog(null, "Enter label of node 2", "", 1);
                     if (n2 != null && !n2.equals("")) {
-                        boolean ok = Map.getInstance().addLink(n1, n2);
+                        boolean ok = map.addLink(n1, n2);
                         if (ok) {
-                            mPanel.updateUI();
                             mPanel.repaint();
                         }
                     }
@@ -492,54 +571,167 @@ public class GUI extends JPanel implements ActionListener, Runnable, MouseMotion
         }
         /** Reloads the current map */
         if (cmd.equalsIgnoreCase("Reload")) {
-            Map.getInstance().reload();
-            mPanel.updateUI();
-            mPanel.repaint();
+            if (!running) {
+                map.reload();
+                mPanel.showMap();
+                mPanel.repaint();
+            }
         }
         /* Loads map 1 */
         if (cmd.equalsIgnoreCase("Load1")) {
-            Map.getInstance().load("1");
-            mPanel.updateUI();
-            mPanel.repaint();
+            if (!running) {
+                map.load("1");
+                mPanel.showMap();
+                mPanel.repaint();
+            }
         }
         /* Loads map 2 */
         if (cmd.equalsIgnoreCase("Load2")) {
-            Map.getInstance().load("2");
-            mPanel.updateUI();
+            if (!running) {
+                map.load("2");
+                mPanel.showMap();
+                mPanel.repaint();
+            }
+        }
+        /* Loads a map file selected by the user */
+        if (cmd.equalsIgnoreCase("Load")) {
+            if (!running) {
+                JFileChooser fc = new JFileChooser(".");
+                if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                    map.load(fc.getSelectedFile().getPath());
+                    if (map.getNodeCount() == 0) {
+                        JOptionPane.showMessageDialog(null, "Unable to load map '" + fc.getSelectedFile().getPath() + "'", "Error", JOptionPane.WARNING_MESSAGE);
+                    }
+                    mPanel.showMap();
+                    mPanel.repaint();
+                }
+            }
+        }
+        /* Zooms so the whole map fills the map panel */
+        if (cmd.equalsIgnoreCase("ZoomFit")) {
+            mPanel.fitMap();
             mPanel.repaint();
         }
+        /* Goes back to the default zoom */
+        if (cmd.equalsIgnoreCase("ZoomDefault")) {
+            mPanel.getViewport().reset();
+            mPanel.repaint();
+        }
+        /* Saves the map to the file it was loaded from, or to a file selected by the user */
+        if (cmd.equalsIgnoreCase("Save") || cmd.equalsIgnoreCase("Save as")) {
+            String filename = map.getMapID();
+            if (cmd.equalsIgnoreCase("Save as") || filename == null || filename.equals("1") || filename.equals("2")) {
+                JFileChooser fc = new JFileChooser(".");
+                filename = null;
+                if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                    filename = fc.getSelectedFile().getPath();
+                }
+            }
+            if (filename != null) {
+                try {
+                    map.save(filename);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(null, "Unable to save map '" + filename + "': " + ex.getMessage(), "Error", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        }
+        /* Selects landmarks, used by A-star to estimate the cost to the end node */
+        if (cmd.equalsIgnoreCase("Landmarks")) {
+            if (!running) {
+                map.selectLandmarks(Landmarks.DEFAULT_COUNT, Landmarks.AVOID);
+            }
+        }
         /* Used to dump the map data to text. Used when using the GUI to create new maps. */
         if (cmd.equalsIgnoreCase("DumpMap")) {
-            Map.getInstance().dumpMap();
+            map.dumpMap();
         }
     }
 
-    public void run() {
+    /**
+     * Called when the speed slider is changed.
+     *
+     * @param e change event
+     */
+    public void stateChanged(ChangeEvent e) {
+        delay = speed.getValue();
+    }
+
+    /**
+     * Starts the selected search on a new thread. The progress of the search
+     * is shown by the frame timer.
+     */
+    private void startSearch() {
         lengthLabel.setText("Path length: 0");
         pieceLabel.setText("Path pieces: 0");
         running = true;
-        method.init();
-        while (!method.step()) {
-            try {
-                mPanel.updateUI();
-                mPanel.repaint();
-                visitedLabel.setText("Visited: " + method.noVisited);
-                Thread.sleep(speed.getValue());
-            } catch (Exception ex) {
+        map.resetLinks();
+        mPanel.repaint();
 
-            }
+        steps = new StepQueue();
+        method.setSearchListener(steps);
+        if (method instanceof Astar) {
+            ((Astar) method).setLandmarks(map.getLandmarks());
         }
+        searchGraph = map.getGraph();
+        Thread thr = new Thread(this);
+        thr.start();
+        frameTimer.start();
+    }
 
-        Path path = method.getPath();
-        path.showPathLinks();
+    /**
+     * Runs the search. Only the step queue is used to pass the progress and
+     * the path to the GUI, since the map and the GUI components are only used
+     * on the event dispatch thread.
+     */
+    public void run() {
+        StepQueue queue = steps;
+        Path path = null;
+        try {
+            method.init(searchGraph);
+            while (!method.step()) {
+                queue.stepDone(method.noVisited);
+                int wait = delay;
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait);
+                    } catch (InterruptedException ex) {
 
-        mPanel.updateUI();
-        mPanel.repaint();
+                    }
+                }
+            }
+            path = method.getPath();
+        } finally {
+            //Also when the search fails, so the frame timer is stopped and
+            //a new search can be started
+            queue.searchDone(method.noVisited, path);
+        }
+    }
 
-        visitedLabel.setText("Visited nodes: " + method.noVisited);
-        lengthLabel.setText("Path length: " + format.format(path.getLength()));
-        pieceLabel.setText("Path segments: " + path.getPieces());
+    /**
+     * Shows the links visited by the running search since the last frame,
+     * and the path when the search is ready. Called by the frame timer.
+     */
+    private void drawFrame() {
+        int n = steps.drain(frameLinks);
+        for (int i = 0; i < n; i++) {
+            map.setVisibility(map.getOutLink(frameLinks[i]), Link.VISITED);
+        }
 
-        running = false;
+        if (steps.isFinished()) {
+            frameTimer.stop();
+            Path path = steps.getPath();
+            visitedLabel.setText("Visited nodes: " + steps.getVisitedCount());
+            if (path != null) {
+                path.showPathLinks(map);
+                lengthLabel.setText("Path length: " + format.format(path.getLength()));
+                pieceLabel.setText("Path segments: " + path.getPieces());
+            } else {
+                lengthLabel.setText("Search failed");
+            }
+            running = false;
+        } else {
+            visitedLabel.setText("Visited: " + steps.getVisitedCount());
+        }
+        mPanel.repaintShownLinks();
     }
 }
@@ -0,0 +1,227 @@
+import java.util.HashMap;
+
+/**
+ * Immutable snapshot of a map, used by the search methods. Nodes are identified
+ * by their id, and the outgoing links of each node are stored in compressed
+ * sparse row form: the links of node id are the link indices from
+ * getOutOffset(id) up to, but not including, getOutOffset(id + 1).
+ * <p>
+ * A graph never changes after it is created, so any number of searches can
+ * run on the same graph at the same time. All search state (costs, parents,
+ * open and closed lists) is kept by each search in its own SearchSpace.
+ * <p>
+ * Graphs saved to binary graph files are opened as a MappedGraph, which reads
+ * the nodes and links directly from the file.
+ *
+ * @author Li Xiao
+ */
+public class Graph {
+    /**
+     * Copies of the map nodes, indexed by node id
+     */
+    private final Node[] nodes;
+    /**
+     * Index of the first outgoing link of each node, plus the total number of links
+     */
+    private final int[] offset;
+    /**
+     * The node id each link leads to
+     */
+    private final int[] target;
+    /**
+     * The weight of each link
+     */
+    private final double[] weight;
+    /**
+     * Used to estimate the cost between two nodes
+     */
+    private final EdgeCostFunction costFunction;
+    /**
+     * Node ids by lower case label
+     */
+    private final HashMap<String, Integer> labels;
+    /**
+     * The start and end node ids, -1 if not set
+     */
+    private final int startNode;
+    private final int endNode;
+
+    /**
+     * Creates a new graph. The offset and target arrays are not copied and
+     * must not be changed afterwards.
+     *
+     * @param nodes        The nodes, ordered by id. Copies are stored in the graph.
+     * @param offset       Index of the first outgoing link of each node, plus the total number of links
+     * @param target       The node id each link leads to
+     * @param weight       The weight of each link
+     * @param costFunction Used to estimate the cost between two nodes
+     */
+    public Graph(Node[] nodes, int[] offset, int[] target, double[] weight, EdgeCostFunction costFunction) {
+        this.nodes = new Node[nodes.length];
+        this.labels = new HashMap<String, Integer>();
+        int s = -1;
+        int e = -1;
+        for (int i = 0; i < nodes.length; i++) {
+            Node n = nodes[i].clone();
+            n.id = i;
+            this.nodes[i] = n;
+            String key = n.label.toLowerCase();
+            if (!labels.containsKey(key)) {
+                labels.put(key, i);
+            }
+            if (n.isStart && s < 0) s = i;
+            if (n.isEnd && e < 0) e = i;
+        }
+        this.offset = offset;
+        this.target = target;
+        this.weight = weight;
+        this.costFunction = costFunction;
+        this.startNode = s;
+        this.endNode = e;
+    }
+
+    /**
+     * Creates a graph that stores its nodes and links elsewhere. Subclasses
+     * using this constructor must override all methods that access nodes or
+     * links.
+     *
+     * @param costFunction Used to estimate the cost between two nodes
+     * @param startNode    The start node id, -1 if not set
+     * @param endNode      The end node id, -1 if not set
+     */
+    protected Graph(EdgeCostFunction costFunction, int startNode, int endNode) {
+        this.nodes = null;
+        this.offset = null;
+        this.target = null;
+        this.weight = null;
+        this.labels = null;
+        this.costFunction = costFunction;
+        this.startNode = startNode;
+        this.endNode = endNode;
+    }
+
+    /**
+     * Returns the number of nodes. Node ids are between 0 and this number - 1.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of links.
+     *
+     * @return Number of links
+     */
+    public int getLinkCount() {
+        return target.length;
+    }
+
+    /**
+     * Returns the node with the specified id. The node must not be changed.
+     *
+     * @param id The node id
+     * @return The node
+     */
+    public Node getNode(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * Finds the node with the specified label (not case sensitive).
+     *
+     * @param label The label of the node
+     * @return The node id, or -1 if not found
+     */
+    public int findNode(String label) {
+        Integer id = labels.get(label.toLowerCase());
+        if (id == null) return -1;
+        return id;
+    }
+
+    /**
+     * Returns the start node.
+     *
+     * @return The start node id, or -1 if there is no start node
+     */
+    public int getStartNode() {
+        return startNode;
+    }
+
+    /**
+     * Returns the end node.
+     *
+     * @return The end node id, or -1 if there is no end node
+     */
+    public int getEndNode() {
+        return endNode;
+    }
+
+    /**
+     * Returns the index of the first outgoing link of a node.
+     *
+     * @param id The node id (or the number of nodes, for the end of the last node's links)
+     * @return Index of the first outgoing link
+     */
+    public int getOutOffset(int id) {
+        return offset[id];
+    }
+
+    /**
+     * Returns the id of the node a link leads to.
+     *
+     * @param e Index of the link
+     * @return The node id
+     */
+    public int getOutTarget(int e) {
+        return target[e];
+    }
+
+    /**
+     * Returns the weight of a link.
+     *
+     * @param e Index of the link
+     * @return The link weight
+     */
+    public double getOutWeight(int e) {
+        return weight[e];
+    }
+
+    /**
+     * Returns the weight of the link going from node a to node b.
+     *
+     * @param a First node id
+     * @param b Second node id
+     * @return The weight of the link, or the estimated cost if the nodes are not linked
+     */
+    public double getLinkWeight(int a, int b) {
+        for (int e = getOutOffset(a); e < getOutOffset(a + 1); e++) {
+            if (getOutTarget(e) == b) {
+                return getOutWeight(e);
+            }
+        }
+        return getCost(a, b);
+    }
+
+    /**
+     * Estimates the cost of going between two nodes, using the cost function
+     * of the map (Euclidean distance by default).
+     *
+     * @param a First node id
+     * @param b Second node id
+     * @return The estimated cost
+     */
+    public double getCost(int a, int b) {
+        return costFunction.getCost(getNode(a), getNode(b));
+    }
+
+    /**
+     * Returns the cost function used to estimate the cost between two nodes.
+     *
+     * @return The cost function
+     */
+    public EdgeCostFunction getCostFunction() {
+        return costFunction;
+    }
+}
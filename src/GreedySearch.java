@@ -1,19 +1,35 @@
-import java.util.Vector;
-
 /**
- * This is where you implement the Greedy Search algorithm.
- * It currently has a Depth-First search implementation.
+ * This is the implementation of the Greedy Search algorithm for
+ * pathfinding.
  *
  * @author Li Xiao
  */
 public class GreedySearch extends SearchMethod {
     /**
-     * Initializes a new Greedy search.
+     * Open list as a priority queue ordered by estimated cost to the end node
+     */
+    private NodeHeap queue;
+
+    /**
+     * Creates a new Greedy search. Call init() to start a search.
      */
     public GreedySearch() {
-        //Must be called to reset all variables and
-        //data structures needed for the search.
-        init();
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        super.init(graph, start, end);
+
+        //Add start node to open list
+        queue = space.getHeap(true);
+        space.open(start, -1, -1, 0);
+        queue.add(start, heuristic(start));
     }
 
     /**
@@ -22,16 +38,21 @@ public class GreedySearch extends SearchMethod {
      * @return True when the search is ready, false if not ready.
      */
     public boolean step() {
+        //No path exists if the open list runs out of nodes
+        if (queue.isEmpty()) {
+            return true;
+        }
+
         //Visit (expand) the best node in the open list
-        Node n = getNextToVisit();
-        map.setLinkAsVisited(n);
+        int n = getNextToVisit();
+        setLinkAsVisited(n);
         //Move the visited node to the closed list
-        closed.add(n);
+        space.close(n);
         //Increase the visited counter
         noVisited++;
 
         //Check if we are finished = current node equals end node
-        if (n.equals(end)) {
+        if (n == end) {
             //Goal node reached!
             path = reconstructPath(n);
             return true;
@@ -39,15 +60,16 @@ public class GreedySearch extends SearchMethod {
             //Not finished yet. Keep iterating.
 
             //Find the nodes that are connected to the current node n
-            Vector<Node> connected = getConnectedNodes(n);
-            for (Node c : connected) {
+            for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+                int c = graph.getOutTarget(e);
                 //If a node is not in the open or closed lists, add it
                 //to the open list
-                if (!isInOpenOrClosed(c)) {
+                if (space.isUnseen(c)) {
                     //Set the parent reference
-                    c.parent = n;
-                    //Add first in the open list (LIFO)
-                    open.add(0, c);
+                    space.open(c, n, e, space.getActual(n) + graph.getOutWeight(e));
+                    //Add to the open list. Among nodes with equal estimated
+                    //cost, the last added is visited first (LIFO).
+                    queue.add(c, heuristic(c));
                 }
             }
         }
@@ -56,43 +78,23 @@ public class GreedySearch extends SearchMethod {
     }
 
     /**
-     * Returns the best node in the open list. This is where you implement
-     * logic for finding the best node in the open list.
+     * Returns the best node in the open list, which is the node with the
+     * lowest estimated cost to the end node.
      *
      * @return The best node in the open list
      */
-    private Node getNextToVisit() {
-        //Pick first node...
-        Node bestNode = open.elementAt(0);
-        double minLen = heuristic(bestNode, end);
-
-        for (Node node : open) {
-            double len = heuristic(node, end);
-
-            if (len < minLen) {
-                minLen = len;
-                bestNode = node;
-            }
-        }
-
-        open.remove(bestNode);
-
-        return bestNode;
+    private int getNextToVisit() {
+        return queue.poll();
     }
 
     /**
-     * Calculates the length (Euclidean distance) between two nodes using
-     * Pythagoras theorem.
+     * Calculates the estimated cost from a node to the end node, given by the
+     * map's cost function (Euclidean distance by default).
      *
-     * @param a The first node
-     * @param b The second node
-     * @return The distance between the nodes
+     * @param n The node id
+     * @return The estimated cost to the end node
      */
-    private double heuristic(Node a, Node b) {
-        if (a == null || b == null)
-            return 0;
-        double sqX = Math.pow(b.x - a.x, 2);
-        double sqY = Math.pow(b.y - a.y, 2);
-        return Math.sqrt(sqX + sqY);
+    private double heuristic(int n) {
+        return graph.getCost(n, end);
     }
 }
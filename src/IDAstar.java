@@ -0,0 +1,291 @@
+/**
+ * This is the implementation of the iterative deepening A-star (IDA-star)
+ * search algorithm for pathfinding.
+ * <p>
+ * IDA-star runs a series of depth-first searches from the start node. Each
+ * search only follows paths with an estimated total cost (actual cost plus
+ * heuristic) up to a bound. The first bound is the estimated cost of the start
+ * node, and each new search uses the lowest estimated cost that was above the
+ * previous bound. Since only the current path is kept, the memory used grows
+ * with the depth of the path instead of with the number of nodes in the graph.
+ * Like A-star, the found path is optimal when the heuristic never overestimates
+ * the cost to the end node.
+ * <p>
+ * Nodes can be visited many times, both in one search and in the repeated
+ * searches. An optional transposition table of fixed size remembers the lowest
+ * actual cost each node was reached with during the current search, so a node
+ * reached again without a lower cost is skipped.
+ *
+ * @author Li Xiao
+ */
+public class IDAstar extends SearchMethod {
+    /**
+     * The current path as a stack. For each depth, the node, the next out
+     * link to follow from the node, the actual cost of the node and the link
+     * the node was reached by.
+     */
+    private int[] stackNode;
+    private int[] stackNext;
+    private double[] stackActual;
+    private int[] stackLink;
+    /**
+     * Number of nodes on the stack
+     */
+    private int depth;
+    /**
+     * Highest estimated total cost followed in the current search
+     */
+    private double bound;
+    /**
+     * Lowest estimated total cost above the bound seen in the current search,
+     * which is the bound of the next search
+     */
+    private double nextBound;
+    /**
+     * True if the start node is pushed but not yet visited
+     */
+    private boolean visitStart;
+    /**
+     * Transposition table, indexed by node id modulo the table size. The node
+     * id, the search it was stored in and the lowest actual cost it was
+     * reached with. Null if no table is used.
+     */
+    private int[] tableNode;
+    private int[] tableSearch;
+    private double[] tableActual;
+    /**
+     * Number of the current search, used to ignore table entries from
+     * earlier searches
+     */
+    private int search;
+
+    /**
+     * Creates a new IDA-star search without a transposition table.
+     * Call init() to start a search.
+     */
+    public IDAstar() {
+        this(0);
+    }
+
+    /**
+     * Creates a new IDA-star search with a transposition table.
+     * Call init() to start a search.
+     *
+     * @param tableSize Number of entries in the transposition table, 0 for none
+     */
+    public IDAstar(int tableSize) {
+        if (tableSize > 0) {
+            tableNode = new int[tableSize];
+            tableSearch = new int[tableSize];
+            tableActual = new double[tableSize];
+        }
+    }
+
+    /**
+     * Initializes a new search. The search space is not used, so unlike the
+     * other search methods this does not allocate anything for each node.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        noVisited = 0;
+        this.graph = graph;
+        this.end = end;
+        this.start = start;
+        path = new Path(graph);
+
+        if (stackNode == null) {
+            stackNode = new int[16];
+            stackNext = new int[16];
+            stackActual = new double[16];
+            stackLink = new int[16];
+        }
+        if (tableNode != null) {
+            for (int i = 0; i < tableNode.length; i++) {
+                tableSearch[i] = 0;
+            }
+        }
+        search = 0;
+
+        //The first search is bounded by the estimated cost of the start node
+        bound = heuristic(start, 0);
+        restart();
+    }
+
+    /**
+     * Starts a new depth-first search from the start node.
+     */
+    private void restart() {
+        search++;
+        nextBound = Double.POSITIVE_INFINITY;
+        depth = 0;
+        push(start, -1, 0);
+        visitStart = true;
+    }
+
+    /**
+     * Finds a path from start to end node. Each step visits one node.
+     *
+     * @return True when the search is ready, false if not ready.
+     */
+    public boolean step() {
+        if (visitStart) {
+            visitStart = false;
+            return visit();
+        }
+
+        while (true) {
+            //Start a new search with a higher bound if the current one is done
+            if (depth == 0) {
+                if (nextBound == Double.POSITIVE_INFINITY) {
+                    //No path exists
+                    return true;
+                }
+                bound = nextBound;
+                restart();
+                visitStart = false;
+                return visit();
+            }
+
+            //Follow the next out link of the node on top of the stack, or
+            //go back to its parent if all links are followed
+            int top = depth - 1;
+            int n = stackNode[top];
+            int e = stackNext[top];
+            if (e >= graph.getOutOffset(n + 1)) {
+                depth--;
+                continue;
+            }
+            stackNext[top]++;
+
+            int c = graph.getOutTarget(e);
+            double actual = stackActual[top] + graph.getOutWeight(e);
+            double f = heuristic(c, actual);
+            if (f > bound) {
+                //Too expensive for this search, but may be in the next
+                if (f < nextBound) {
+                    nextBound = f;
+                }
+                continue;
+            }
+            //Skip nodes that are already on the current path
+            if (isOnPath(c)) {
+                continue;
+            }
+            //Skip nodes already reached with a lower cost in this search
+            if (!updateTable(c, actual)) {
+                continue;
+            }
+
+            push(c, e, actual);
+            return visit();
+        }
+    }
+
+    /**
+     * Visits (expands) the node on top of the stack.
+     *
+     * @return True if the node is the end node, false otherwise
+     */
+    private boolean visit() {
+        int top = depth - 1;
+        if (stackLink[top] >= 0 && listener != null) {
+            listener.linkVisited(stackLink[top]);
+        }
+        //Increase the visited counter
+        noVisited++;
+
+        //Check if we are finished = current node equals end node
+        if (stackNode[top] == end) {
+            //Goal node reached! The path is the nodes on the stack.
+            for (int i = top; i >= 0; i--) {
+                path.add(graph.getNode(stackNode[i]));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a node on top of the stack.
+     *
+     * @param n      The node id
+     * @param link   The link the node was reached by, -1 for the start node
+     * @param actual Actual cost of the node
+     */
+    private void push(int n, int link, double actual) {
+        if (depth == stackNode.length) {
+            int size = depth * 2;
+            int[] node = new int[size];
+            int[] next = new int[size];
+            double[] act = new double[size];
+            int[] lnk = new int[size];
+            System.arraycopy(stackNode, 0, node, 0, depth);
+            System.arraycopy(stackNext, 0, next, 0, depth);
+            System.arraycopy(stackActual, 0, act, 0, depth);
+            System.arraycopy(stackLink, 0, lnk, 0, depth);
+            stackNode = node;
+            stackNext = next;
+            stackActual = act;
+            stackLink = lnk;
+        }
+        stackNode[depth] = n;
+        stackNext[depth] = graph.getOutOffset(n);
+        stackActual[depth] = actual;
+        stackLink[depth] = link;
+        depth++;
+    }
+
+    /**
+     * Checks if a node is on the current path.
+     *
+     * @param n The node id
+     * @return True if the node is on the stack, false otherwise
+     */
+    private boolean isOnPath(int n) {
+        for (int i = 0; i < depth; i++) {
+            if (stackNode[i] == n) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores the actual cost a node is reached with in the transposition
+     * table, unless the node was already reached with the same or a lower
+     * cost in the current search. An entry for another node in the same
+     * slot is replaced.
+     *
+     * @param n      The node id
+     * @param actual Actual cost of the node
+     * @return True if the node should be visited, false if it can be skipped
+     */
+    private boolean updateTable(int n, double actual) {
+        if (tableNode == null) return true;
+
+        int i = n % tableNode.length;
+        if (tableSearch[i] == search && tableNode[i] == n && tableActual[i] <= actual) {
+            return false;
+        }
+        tableNode[i] = n;
+        tableSearch[i] = search;
+        tableActual[i] = actual;
+        return true;
+    }
+
+    /**
+     * Calculates the estimated total cost of a path through a node to the end node.
+     * This is the actual cost of the node plus the estimated cost from the node to
+     * the end node, given by the map's cost function (Euclidean distance by default).
+     *
+     * @param n      The node id
+     * @param actual Actual cost of the node
+     * @return The estimated total cost
+     */
+    private double heuristic(int n, double actual) {
+        double lenToGoal = graph.getCost(n, end);
+
+        return lenToGoal + actual;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Hash index from labels to objects, where labels are not case sensitive.
+ * Labels can be looked up either as strings or as a range of characters in
+ * a char array, so labels read by a MapTokenizer are found without creating
+ * a string for each lookup.
+ *
+ * @author Li Xiao
+ */
+public class LabelIndex<T> {
+    /**
+     * The labels, indexed by hash slot. Null for empty slots.
+     */
+    private String[] keys = new String[16];
+    /**
+     * The object for each label
+     */
+    private Object[] values = new Object[16];
+    /**
+     * The hash of each label
+     */
+    private int[] hashes = new int[16];
+    /**
+     * Number of labels in the index
+     */
+    private int size = 0;
+
+    /**
+     * Returns the number of labels in the index.
+     *
+     * @return Number of labels
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all labels from the index.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the object with the specified label.
+     *
+     * @param label The label
+     * @return The object, or null if the label is not in the index
+     */
+    public T get(String label) {
+        int h = hash(label);
+        int mask = keys.length - 1;
+        for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equalsIgnoreCase(label)) {
+                return value(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the object with the label stored in a range of a char array.
+     *
+     * @param buf    The characters
+     * @param off    Index of the first character of the label
+     * @param length Number of characters in the label
+     * @return The object, or null if the label is not in the index
+     */
+    public T get(char[] buf, int off, int length) {
+        int h = 0;
+        for (int i = off; i < off + length; i++) {
+            h = 31 * h + fold(buf[i]);
+        }
+        h ^= h >>> 16;
+        int mask = keys.length - 1;
+        for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && equals(keys[i], buf, off, length)) {
+                return value(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds an object to the index, or replaces the object if the label is
+     * already in the index.
+     *
+     * @param label The label
+     * @param value The object
+     */
+    public void put(String label, T value) {
+        int i = slot(label);
+        if (keys[i] == null) {
+            add(i, label, value);
+        } else {
+            values[i] = value;
+        }
+    }
+
+    /**
+     * Adds an object to the index, unless the label is already in the index.
+     *
+     * @param label The label
+     * @param value The object
+     * @return True if the object was added, false if the label was already in the index
+     */
+    public boolean putIfAbsent(String label, T value) {
+        int i = slot(label);
+        if (keys[i] != null) return false;
+        add(i, label, value);
+        return true;
+    }
+
+    /**
+     * Returns the slot holding a label, or the empty slot where it would be added.
+     */
+    private int slot(String label) {
+        int h = hash(label);
+        int mask = keys.length - 1;
+        int i = h & mask;
+        while (keys[i] != null && !(hashes[i] == h && keys[i].equalsIgnoreCase(label))) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Adds a label in an empty slot, growing the index if it gets too full.
+     */
+    private void add(int i, String label, T value) {
+        keys[i] = label;
+        values[i] = value;
+        hashes[i] = hash(label);
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Moves all labels to new arrays with the specified number of slots.
+     */
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new String[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int i) {
+        return (T) values[i];
+    }
+
+    /**
+     * Returns the hash of a label, the same for labels that only differ in case.
+     */
+    private static int hash(String label) {
+        int h = 0;
+        for (int i = 0; i < label.length(); i++) {
+            h = 31 * h + fold(label.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns a character with the case removed, the same way as
+     * String.equalsIgnoreCase compares characters.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Checks if a label equals a range of characters, ignoring case.
+     */
+    private static boolean equals(String label, char[] buf, int off, int length) {
+        if (label.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            char c1 = label.charAt(i);
+            char c2 = buf[off + i];
+            if (c1 != c2 && fold(c1) != fold(c2)) return false;
+        }
+        return true;
+    }
+}
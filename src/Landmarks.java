@@ -0,0 +1,631 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Landmark distances used by A-star for the ALT (A-star, landmarks and
+ * triangle inequality) heuristic.
+ * <p>
+ * A small number of nodes are selected as landmarks, and the cost of the
+ * shortest path from each landmark to every node, and from every node to
+ * each landmark, is stored. By the triangle inequality, the cost from a node
+ * v to a node t is at least d(L, t) - d(L, v) and at least d(v, L) - d(t, L)
+ * for every landmark L. The highest of these bounds never overestimates the
+ * cost, and follows the links of the graph, so it is much closer to the real
+ * cost than the straight line distance when paths have to make detours.
+ * <p>
+ * Landmarks are selected by one of two strategies. FARTHEST selects each
+ * landmark as far as possible from the landmarks already selected. AVOID
+ * builds a shortest path tree from a random node and selects a landmark in the
+ * part of the tree where the current landmarks give the worst bounds.
+ * <p>
+ * Landmarks are saved to a file next to the map (the map file name followed
+ * by ".landmarks"). The file stores a fingerprint of the graph, so landmarks
+ * are not used for a map that has changed since they were selected.
+ *
+ * @author Li Xiao
+ */
+public class Landmarks {
+    /**
+     * Landmark selection strategies
+     */
+    public static final String FARTHEST = "farthest";
+    public static final String AVOID = "avoid";
+    /**
+     * Number of landmarks selected by default
+     */
+    public static final int DEFAULT_COUNT = 16;
+    /**
+     * Identifies a landmark file, "STBL" in little-endian order
+     */
+    public static final int MAGIC = 0x4C425453;
+    /**
+     * Version of the landmark file format
+     */
+    public static final int VERSION = 1;
+    /**
+     * Added to the map file name to get the landmark file name
+     */
+    public static final String EXTENSION = ".landmarks";
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Number of nodes and links in the graph
+     */
+    private final int noNodes;
+    private final int noLinks;
+    /**
+     * Fingerprint of the graph the landmarks were selected for
+     */
+    private final long fingerprint;
+    /**
+     * Node id of each landmark
+     */
+    private final int[] landmarks;
+    /**
+     * Cost from each landmark to each node, at index node * count + landmark.
+     * Infinite if the node can't be reached.
+     */
+    private final double[] from;
+    /**
+     * Cost from each node to each landmark, in the same order. The same array
+     * as from if every link has a link back with the same weight.
+     */
+    private final double[] to;
+
+    private Landmarks(int noNodes, int noLinks, long fingerprint, int[] landmarks, double[] from, double[] to) {
+        this.noNodes = noNodes;
+        this.noLinks = noLinks;
+        this.fingerprint = fingerprint;
+        this.landmarks = landmarks;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     *
+     * @return Number of landmarks
+     */
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the node id of a landmark.
+     *
+     * @param i Index of the landmark
+     * @return The node id
+     */
+    public int getLandmark(int i) {
+        return landmarks[i];
+    }
+
+    /**
+     * Returns the number of nodes in the graph the landmarks were selected for.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return noNodes;
+    }
+
+    /**
+     * Checks if the landmarks were selected for a graph with the same nodes
+     * and links as the specified graph.
+     *
+     * @param graph The graph
+     * @return True if the landmarks can be used for the graph, false otherwise
+     */
+    public boolean matches(Graph graph) {
+        return graph.getNodeCount() == noNodes && graph.getLinkCount() == noLinks && fingerprint(graph) == fingerprint;
+    }
+
+    /**
+     * Returns a lower bound of the cost of the shortest path between two nodes.
+     *
+     * @param v The first node id
+     * @param t The second node id
+     * @return The lower bound, infinite if there is no path
+     */
+    public double getLowerBound(int v, int t) {
+        return getLowerBound(v, t, landmarks.length);
+    }
+
+    /**
+     * Returns a lower bound of the cost of the shortest path between two
+     * nodes, using the first landmarks only.
+     */
+    private double getLowerBound(int v, int t, int noLandmarks) {
+        int k = landmarks.length;
+        int vi = v * k;
+        int ti = t * k;
+        double h = 0;
+        for (int i = 0; i < noLandmarks; i++) {
+            //Comparisons are false for NaN, which is the bound when both
+            //nodes can't be reached from (or can't reach) the landmark
+            double d = from[ti + i] - from[vi + i];
+            if (d > h) h = d;
+            d = to[vi + i] - to[ti + i];
+            if (d > h) h = d;
+        }
+        return h;
+    }
+
+    /**
+     * Selects landmarks for a graph and calculates their costs.
+     *
+     * @param graph    The graph
+     * @param count    Number of landmarks
+     * @param strategy How to select the landmarks: FARTHEST or AVOID
+     * @param seed     Seed for the random numbers used to select the landmarks
+     * @return The landmarks
+     * @throws IllegalArgumentException if the strategy is unknown
+     */
+    public static Landmarks select(Graph graph, int count, String strategy, long seed) {
+        boolean avoid;
+        if (strategy.equalsIgnoreCase(FARTHEST)) {
+            avoid = false;
+        } else if (strategy.equalsIgnoreCase(AVOID)) {
+            avoid = true;
+        } else {
+            throw new IllegalArgumentException("Unknown landmark strategy '" + strategy + "'");
+        }
+
+        int n = graph.getNodeCount();
+        int k = Math.min(count, n);
+        boolean symmetric = isSymmetric(graph);
+        double[] from = new double[n * k];
+        double[] to = symmetric ? from : new double[n * k];
+        Landmarks lm = new Landmarks(n, graph.getLinkCount(), fingerprint(graph), new int[k], from, to);
+
+        Dijkstra forward = new Dijkstra(graph, false);
+        Dijkstra backward = symmetric ? forward : new Dijkstra(graph, true);
+        Random rnd = new Random(seed);
+        boolean[] isLandmark = new boolean[n];
+        //Lowest cost from any landmark to each node, used by FARTHEST
+        double[] closest = new double[n];
+        for (int v = 0; v < n; v++) {
+            closest[v] = Double.POSITIVE_INFINITY;
+        }
+
+        for (int i = 0; i < k; i++) {
+            int l;
+            if (avoid) {
+                l = selectAvoid(lm, i, forward, isLandmark, rnd);
+            } else if (i == 0) {
+                //Start as far as possible from a random node
+                forward.run(rnd.nextInt(n));
+                l = forward.getFarthest();
+            } else {
+                l = -1;
+                for (int v = 0; v < n; v++) {
+                    if (!isLandmark[v] && (l < 0 || closest[v] > closest[l])) l = v;
+                }
+            }
+            lm.landmarks[i] = l;
+            isLandmark[l] = true;
+
+            forward.run(l);
+            for (int v = 0; v < n; v++) {
+                from[v * k + i] = forward.dist[v];
+                if (forward.dist[v] < closest[v]) closest[v] = forward.dist[v];
+            }
+            if (!symmetric) {
+                backward.run(l);
+                for (int v = 0; v < n; v++) {
+                    to[v * k + i] = backward.dist[v];
+                }
+            }
+        }
+        return lm;
+    }
+
+    /**
+     * Selects the next landmark with the AVOID strategy. A shortest path
+     * tree is built from a root node, and each node in the tree is weighted
+     * by how much its cost from the root is underestimated by the landmarks
+     * selected so far. The landmark is a leaf below the node with the highest
+     * total weight in its subtree, counting no subtrees that already contain
+     * a landmark.
+     */
+    private static int selectAvoid(Landmarks lm, int noSelected, Dijkstra forward, boolean[] isLandmark, Random rnd) {
+        int n = lm.noNodes;
+        int k = lm.landmarks.length;
+
+        //Start in a part of the graph no landmark can reach, if there is one
+        int root = -1;
+        int first = rnd.nextInt(n);
+        for (int j = 0; j < n && noSelected > 0; j++) {
+            int v = (first + j) % n;
+            boolean reached = false;
+            for (int i = 0; i < noSelected && !reached; i++) {
+                reached = lm.from[v * k + i] < Double.POSITIVE_INFINITY;
+            }
+            if (!reached) {
+                root = v;
+                break;
+            }
+        }
+        if (root < 0) root = first;
+
+        forward.run(root);
+        double[] size = new double[n];
+        boolean[] covered = new boolean[n];
+        int[] bestChild = new int[n];
+        for (int j = 0; j < forward.noSettled; j++) {
+            int v = forward.order[j];
+            size[v] = forward.dist[v] - lm.getLowerBound(root, v, noSelected);
+            covered[v] = isLandmark[v];
+            bestChild[v] = -1;
+        }
+        //Children are settled after their parents, so the subtree of a node
+        //is complete when the node is reached going backwards
+        for (int j = forward.noSettled - 1; j > 0; j--) {
+            int v = forward.order[j];
+            int p = forward.parent[v];
+            if (covered[v]) {
+                covered[p] = true;
+            } else {
+                size[p] += size[v];
+                if (bestChild[p] < 0 || size[v] > size[bestChild[p]]) bestChild[p] = v;
+            }
+        }
+
+        int best = -1;
+        for (int j = 0; j < forward.noSettled; j++) {
+            int v = forward.order[j];
+            if (!covered[v] && (best < 0 || size[v] > size[best])) best = v;
+        }
+        if (best < 0) {
+            //Every node in the tree has a landmark below it
+            for (int v = 0; v < n; v++) {
+                if (!isLandmark[v]) return v;
+            }
+        }
+        while (bestChild[best] >= 0) {
+            best = bestChild[best];
+        }
+        return best;
+    }
+
+    /**
+     * Checks if every link in a graph has a link back with the same weight,
+     * so the cost to a node is the same as the cost from it.
+     */
+    private static boolean isSymmetric(Graph graph) {
+        int n = graph.getNodeCount();
+        for (int a = 0; a < n; a++) {
+            for (int e = graph.getOutOffset(a); e < graph.getOutOffset(a + 1); e++) {
+                int b = graph.getOutTarget(e);
+                boolean found = false;
+                for (int f = graph.getOutOffset(b); f < graph.getOutOffset(b + 1) && !found; f++) {
+                    found = graph.getOutTarget(f) == a && graph.getOutWeight(f) == graph.getOutWeight(e);
+                }
+                if (!found) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates a fingerprint of the links and weights in a graph. The order
+     * of the links of a node does not change the fingerprint, since it may
+     * change when a map is saved and loaded again.
+     *
+     * @param graph The graph
+     * @return The fingerprint
+     */
+    public static long fingerprint(Graph graph) {
+        int n = graph.getNodeCount();
+        long h = n * 0x9E3779B97F4A7C15L + graph.getLinkCount();
+        for (int a = 0; a < n; a++) {
+            for (int e = graph.getOutOffset(a); e < graph.getOutOffset(a + 1); e++) {
+                long x = ((long) a << 32) | (graph.getOutTarget(e) & 0xffffffffL);
+                x = mix(x) ^ Double.doubleToLongBits(graph.getOutWeight(e));
+                h += mix(x);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the bits of a value (the finalizer of MurmurHash3).
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * Reads landmarks from a landmark file.
+     *
+     * @param filename The landmark file
+     * @param graph    The graph the landmarks are used for
+     * @return The landmarks
+     * @throws IOException if the file can't be read, is not a landmark file of a supported
+     *                     version, or the landmarks were selected for another graph
+     */
+    public static Landmarks read(String filename, Graph graph) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel ch = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("'" + filename + "' is not a landmark file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported landmark file version " + header.getInt(4) + " in '" + filename + "'");
+            }
+            int noNodes = header.getInt(8);
+            int noLinks = header.getInt(12);
+            int k = header.getInt(16);
+            boolean symmetric = header.getInt(20) == 1;
+            long fingerprint = header.getLong(24);
+            if (noNodes != graph.getNodeCount() || noLinks != graph.getLinkCount() || fingerprint != fingerprint(graph)) {
+                throw new IOException("The landmarks in '" + filename + "' were selected for another map");
+            }
+            long size = align(4L * k) + 8L * noNodes * k * (symmetric ? 1 : 2);
+            if (HEADER_SIZE + size > ch.size()) {
+                throw new IOException("Landmark file '" + filename + "' is truncated");
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate((int) align(4L * k)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, buf, HEADER_SIZE);
+            int[] landmarks = new int[k];
+            buf.asIntBuffer().get(landmarks);
+            long pos = HEADER_SIZE + buf.capacity();
+            double[] from = new double[noNodes * k];
+            pos = readDoubles(ch, pos, from);
+            double[] to = from;
+            if (!symmetric) {
+                to = new double[noNodes * k];
+                readDoubles(ch, pos, to);
+            }
+            return new Landmarks(noNodes, noLinks, fingerprint, landmarks, from, to);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the landmarks to a landmark file.
+     *
+     * @param filename The landmark file
+     * @throws IOException if the file can't be written
+     */
+    public void write(String filename) throws IOException {
+        int k = landmarks.length;
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            file.setLength(0);
+            FileChannel ch = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(noNodes);
+            header.putInt(noLinks);
+            header.putInt(k);
+            header.putInt(to == from ? 1 : 0);
+            header.putLong(fingerprint);
+            header.rewind();
+            writeFully(ch, header);
+
+            ByteBuffer buf = ByteBuffer.allocate((int) align(4L * k)).order(ByteOrder.LITTLE_ENDIAN);
+            buf.asIntBuffer().put(landmarks);
+            writeFully(ch, buf);
+            writeDoubles(ch, from);
+            if (to != from) {
+                writeDoubles(ch, to);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Rounds a file position up to the next multiple of 8.
+     */
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Reads a file from a position until the buffer is full, and rewinds it.
+     */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+        buf.rewind();
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    /**
+     * Reads an array of doubles from a file position, in blocks.
+     *
+     * @return The file position after the doubles
+     */
+    private static long readDoubles(FileChannel ch, long pos, double[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < values.length; ) {
+            int n = Math.min(values.length - i, buf.capacity() / 8);
+            buf.clear().limit(n * 8);
+            readFully(ch, buf, pos);
+            buf.asDoubleBuffer().get(values, i, n);
+            pos += n * 8L;
+            i += n;
+        }
+        return pos;
+    }
+
+    /**
+     * Writes an array of doubles at the current file position, in blocks.
+     */
+    private static void writeDoubles(FileChannel ch, double[] values) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < values.length; ) {
+            int n = Math.min(values.length - i, buf.capacity() / 8);
+            buf.clear();
+            buf.asDoubleBuffer().put(values, i, n);
+            buf.limit(n * 8);
+            writeFully(ch, buf);
+            i += n;
+        }
+    }
+
+    /**
+     * Calculates the cost of the shortest paths from one node to all other
+     * nodes, following the links forwards or backwards.
+     */
+    private static class Dijkstra {
+        private final Graph graph;
+        /**
+         * Links in the backward direction as compressed sparse rows, null
+         * when following the links forwards
+         */
+        private int[] offset;
+        private int[] target;
+        private double[] weight;
+        /**
+         * Cost and parent of each node from the last run
+         */
+        final double[] dist;
+        final int[] parent;
+        /**
+         * The reached nodes in the order they were settled
+         */
+        final int[] order;
+        int noSettled;
+        private final NodeHeap heap = new NodeHeap();
+
+        Dijkstra(Graph graph, boolean backward) {
+            this.graph = graph;
+            int n = graph.getNodeCount();
+            dist = new double[n];
+            parent = new int[n];
+            order = new int[n];
+            if (backward) {
+                offset = new int[n + 1];
+                target = new int[graph.getLinkCount()];
+                weight = new double[graph.getLinkCount()];
+                for (int e = 0; e < graph.getLinkCount(); e++) {
+                    offset[graph.getOutTarget(e) + 1]++;
+                }
+                for (int i = 0; i < n; i++) {
+                    offset[i + 1] += offset[i];
+                }
+                int[] next = new int[n];
+                System.arraycopy(offset, 0, next, 0, n);
+                for (int a = 0; a < n; a++) {
+                    for (int e = graph.getOutOffset(a); e < graph.getOutOffset(a + 1); e++) {
+                        int pos = next[graph.getOutTarget(e)]++;
+                        target[pos] = a;
+                        weight[pos] = graph.getOutWeight(e);
+                    }
+                }
+            }
+        }
+
+        void run(int source) {
+            int n = dist.length;
+            for (int i = 0; i < n; i++) {
+                dist[i] = Double.POSITIVE_INFINITY;
+                parent[i] = -1;
+            }
+            heap.reset(n, false);
+            noSettled = 0;
+            dist[source] = 0;
+            heap.add(source, 0);
+            while (!heap.isEmpty()) {
+                int a = heap.poll();
+                order[noSettled++] = a;
+                int first = offset == null ? graph.getOutOffset(a) : offset[a];
+                int last = offset == null ? graph.getOutOffset(a + 1) : offset[a + 1];
+                for (int e = first; e < last; e++) {
+                    int b = offset == null ? graph.getOutTarget(e) : target[e];
+                    double d = dist[a] + (offset == null ? graph.getOutWeight(e) : weight[e]);
+                    if (d < dist[b]) {
+                        if (dist[b] == Double.POSITIVE_INFINITY) {
+                            heap.add(b, d);
+                        } else if (heap.contains(b)) {
+                            heap.decreaseKey(b, d);
+                        } else {
+                            continue;
+                        }
+                        dist[b] = d;
+                        parent[b] = a;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the reached node with the highest cost from the last run.
+         */
+        int getFarthest() {
+            return order[noSettled - 1];
+        }
+    }
+
+    /**
+     * Selects landmarks for a map and saves them next to the map file.
+     * <p>
+     * Usage: <code>java Landmarks &lt;map&gt; [-count k] [-strategy farthest|avoid] [-seed n]</code>
+     *
+     * @param args The map file, and optionally the options
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length % 2 != 1) {
+            System.err.println("Usage: java Landmarks <map> [-count k] [-strategy farthest|avoid] [-seed n]");
+            System.exit(1);
+        }
+        String mapID = args[0];
+        int count = DEFAULT_COUNT;
+        String strategy = AVOID;
+        long seed = 1;
+        for (int i = 1; i < args.length; i += 2) {
+            if (args[i].equals("-count")) {
+                count = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-strategy")) {
+                strategy = args[i + 1];
+            } else if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else {
+                System.err.println("Unknown option " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        try {
+            if (!new File(mapID).exists()) {
+                throw new IOException("Unable to find map file '" + mapID + "'");
+            }
+            Graph graph = MappedGraph.isGraphFile(mapID) ? MappedGraph.open(mapID, true) : new Map(mapID).getGraph();
+            long time = System.nanoTime();
+            Landmarks lm = select(graph, count, strategy, seed);
+            time = System.nanoTime() - time;
+            lm.write(mapID + EXTENSION);
+            System.out.println("Selected " + lm.getCount() + " landmarks in " + (time / 1000000) + " ms");
+        } catch (Exception ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
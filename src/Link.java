@@ -33,6 +33,18 @@ public class Link {
      */
     public int visibility = NONE;
 
+    /**
+     * The cost of going along this link. Calculated by the map's cost function
+     * when the link is added, unless an explicit weight is given.
+     */
+    public double weight;
+
+    /**
+     * True if the weight is explicitly given in the map and shall not be
+     * recalculated by the cost function.
+     */
+    public boolean explicitWeight = false;
+
     /**
      * Creates a new link.
      *
@@ -67,47 +79,4 @@ public class Link {
     public String getLabel() {
         return a.label + "-" + b.label;
     }
-
-    /***********
-     *
-     * The methods below are only used by the GUI.
-     * Leave them as they are now.
-     *
-     ***********/
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawX1() {
-        return a.getDrawX() + 8;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawX2() {
-        return b.getDrawX() + 8;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawY1() {
-        return a.getDrawY() + 8;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawY2() {
-        return b.getDrawY() + 8;
-    }
 }
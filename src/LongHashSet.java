@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * Set of long values, stored in an open addressing hash table of primitive
+ * longs so adding a value does not create any objects.
+ *
+ * @author Li Xiao
+ */
+public class LongHashSet {
+    /**
+     * Marks empty slots. The value itself is kept in a separate flag.
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The values, indexed by hash slot
+     */
+    private long[] values;
+    /**
+     * Number of values in the set, not counting EMPTY
+     */
+    private int size = 0;
+    /**
+     * True if EMPTY is in the set
+     */
+    private boolean hasEmpty = false;
+
+    /**
+     * Creates a new set.
+     */
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * Creates a new set with room for the specified number of values
+     * before it must grow.
+     *
+     * @param capacity Expected number of values
+     */
+    public LongHashSet(int capacity) {
+        int n = 16;
+        while (n < 2L * capacity) {
+            n *= 2;
+        }
+        values = new long[n];
+        Arrays.fill(values, EMPTY);
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return Number of values
+     */
+    public int size() {
+        return hasEmpty ? size + 1 : size;
+    }
+
+    /**
+     * Removes all values from the set.
+     */
+    public void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+        hasEmpty = false;
+    }
+
+    /**
+     * Checks if a value is in the set.
+     *
+     * @param v The value
+     * @return True if the value is in the set, false otherwise
+     */
+    public boolean contains(long v) {
+        if (v == EMPTY) return hasEmpty;
+
+        int mask = values.length - 1;
+        for (int i = hash(v) & mask; values[i] != EMPTY; i = (i + 1) & mask) {
+            if (values[i] == v) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param v The value
+     * @return True if the value was added, false if it already was in the set
+     */
+    public boolean add(long v) {
+        if (v == EMPTY) {
+            if (hasEmpty) return false;
+            hasEmpty = true;
+            return true;
+        }
+
+        int mask = values.length - 1;
+        int i = hash(v) & mask;
+        while (values[i] != EMPTY) {
+            if (values[i] == v) return false;
+            i = (i + 1) & mask;
+        }
+        values[i] = v;
+        size++;
+        if (size * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Moves all values to a new table with the specified number of slots.
+     */
+    private void rehash(int capacity) {
+        long[] old = values;
+        values = new long[capacity];
+        Arrays.fill(values, EMPTY);
+        int mask = capacity - 1;
+        for (long v : old) {
+            if (v == EMPTY) continue;
+            int i = hash(v) & mask;
+            while (values[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            values[i] = v;
+        }
+    }
+
+    /**
+     * Spreads the bits of a value, so that values differing only in the
+     * high or low bits end up in different slots.
+     */
+    private static int hash(long v) {
+        v *= 0x9E3779B97F4A7C15L;
+        return (int) (v ^ (v >>> 32));
+    }
+}
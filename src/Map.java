@@ -1,13 +1,38 @@
 import javax.swing.*;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Vector;
 
 /**
  * This class holds the map to search for a path in. A map is a set of nodes
  * connected by links.
+ * <p>
+ * The map can be changed by the GUI. Searches run on an immutable snapshot of
+ * the map, returned by getGraph(), so several searches can run at the same
+ * time on the same map.
  *
  * @author Johan Hagelbäck
  */
 public class Map {
+    /**
+     * Width and height of the cells of the grids that index the nodes and
+     * links by position, in map coordinates
+     */
+    private static final int GRID_CELL_SIZE = 8;
+    /**
+     * Orders nodes as in the node list, after the adjacency structure is built
+     */
+    private static final Comparator<Node> NODE_ORDER = new Comparator<Node>() {
+        public int compare(Node a, Node b) {
+            return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+        }
+    };
+
     /**
      * The nodes in the map
      */
@@ -16,38 +41,126 @@ public class Map {
      * The links in the map
      */
     private Vector<Link> links;
-    /**
-     * This is a singleton class
-     */
-    private static Map instance;
     /**
      * The filename of the map to load
      */
     private String mapID = "1";
+    /**
+     * The lines of the map to load, if not loaded from a file or built-in map
+     */
+    private String[] cont;
+    /**
+     * Calculates the weight of links without an explicit weight
+     */
+    private EdgeCostFunction costFunction = EdgeCostFunction.EUCLIDEAN;
+    /**
+     * Adjacency structure in compressed sparse row form. The outgoing links of
+     * the node with id i are stored in adjLinks[adjOffset[i]] to
+     * adjLinks[adjOffset[i + 1] - 1], and the ids of the nodes they lead to in
+     * the same positions of adjTarget. The arrays are shared with the graph
+     * snapshot, so they are replaced and never changed once built.
+     */
+    private int[] adjOffset;
+    private int[] adjTarget;
+    private Link[] adjLinks;
+    /**
+     * True if the nodes or links have changed since the adjacency structure
+     * was built
+     */
+    private boolean adjacencyDirty = true;
+    /**
+     * Snapshot of the map used by searches, null if the map has changed since
+     * it was created
+     */
+    private Graph graph;
+    /**
+     * Nodes by label (not case sensitive). If several nodes have the same
+     * label, the first one in the node list is indexed.
+     */
+    private LabelIndex<Node> nodeIndex = new LabelIndex<Node>();
+    /**
+     * Links by label (not case sensitive). If several links have the same
+     * label, the first one in the link list is indexed. Null until a link is
+     * first looked up by label, since it needs a label string for every link.
+     */
+    private LabelIndex<Link> linkIndex;
+    /**
+     * Positions of the nodes added while a map is read, used to skip nodes at
+     * the same position as an earlier node. Null when no map is being read.
+     */
+    private LongHashSet loadPositions;
+    /**
+     * The links added while a map is read, as pairs of node ids packed into a
+     * long, used to skip duplicate links. Null when no map is being read.
+     */
+    private LongHashSet loadLinks;
+    /**
+     * Number of changes to the nodes and links, used by the GUI to know when
+     * the map must be drawn again
+     */
+    private int noChanges = 0;
+    /**
+     * The nodes and the links by position, used to find the ones in an area
+     * of the map. Links are indexed by the box around their two nodes.
+     */
+    private SpatialGrid<Node> nodeGrid = new SpatialGrid<Node>(GRID_CELL_SIZE);
+    private SpatialGrid<Link> linkGrid = new SpatialGrid<Link>(GRID_CELL_SIZE);
+    /**
+     * The links shown as visited and as in the path, set with setVisibility().
+     * A link stays in a list when its visibility is changed again, so the
+     * lists can contain links with another visibility. The lists are replaced
+     * when the links are reset.
+     */
+    private Vector<Link> visitedLinks = new Vector<Link>();
+    private Vector<Link> pathLinks = new Vector<Link>();
+    /**
+     * Landmarks for the ALT heuristic, null if none are selected
+     */
+    private Landmarks landmarks;
+    /**
+     * The last graph snapshot the landmarks were checked against
+     */
+    private Graph landmarksGraph;
+    /**
+     * Tokenizer used by parseLine(String)
+     */
+    private MapTokenizer lineTokenizer;
+
+    /**
+     * Creates a new map and loads the first built-in map.
+     */
+    public Map() {
+        this("1");
+    }
 
     /**
-     * Singleton class.
+     * Creates a new map.
      *
-     * @return The class instance
+     * @param mapID The map to load: "1" or "2" for the built-in maps, otherwise
+     *              the path to a map file
      */
-    public static Map getInstance() {
-        if (instance == null) {
-            instance = new Map();
-        }
-        return instance;
+    public Map(String mapID) {
+        nodes = new Vector<Node>();
+        links = new Vector<Link>();
+        this.mapID = mapID;
+        readMap();
     }
 
     /**
-     * Private constructor (singleton class)
+     * Creates a new map from the lines of a map file.
+     *
+     * @param cont The lines of the map
      */
-    private Map() {
+    public Map(String[] cont) {
         nodes = new Vector<Node>();
         links = new Vector<Link>();
+        this.cont = cont;
         readMap();
     }
 
     /**
-     * Returns the nodes in this map.
+     * Returns the nodes in this map. The list must not be changed, use
+     * addNode and removeNode instead.
      *
      * @return A list of nodes
      */
@@ -56,30 +169,64 @@ public class Map {
     }
 
     /**
-     * Shows the link as visited in the GUI. The link is the one connecting the specified
-     * node and its parent.
+     * Returns the links in this map. The list must not be changed, use
+     * addLink and removeLink instead.
      *
-     * @param n The node
+     * @return A list of links
      */
-    public void setLinkAsVisited(Node n) {
-        Node a = n.parent;
-        if (a == null) return;
-        Node b = n;
+    public Vector<Link> getLinks() {
+        return links;
+    }
 
-        for (Link l : links) {
-            if (l.a.equals(a) && l.b.equals(b)) {
-                l.visibility = Link.VISITED;
-            }
-        }
+    /**
+     * Returns the number of changes to the nodes and links of the map. The
+     * number is increased each time a node or link is added, removed or
+     * changed, or a map is loaded.
+     *
+     * @return Number of changes
+     */
+    public int getChangeCount() {
+        return noChanges;
     }
 
     /**
-     * Returns the links in this map.
+     * Returns the links shown as visited. The list can contain links that are
+     * no longer visited, so check the visibility of each link. Links are only
+     * added last in the list, and a new list is used when the links are reset.
      *
      * @return A list of links
      */
-    public Vector<Link> getLinks() {
-        return links;
+    public Vector<Link> getVisitedLinks() {
+        return visitedLinks;
+    }
+
+    /**
+     * Returns the links shown as in the path. The list can contain links that
+     * are no longer in the path, so check the visibility of each link. Links
+     * are only added last in the list, and a new list is used when the links
+     * are reset.
+     *
+     * @return A list of links
+     */
+    public Vector<Link> getPathLinks() {
+        return pathLinks;
+    }
+
+    /**
+     * Sets how a link is shown in the GUI, and adds it to the list of links
+     * with that visibility.
+     *
+     * @param l          The link
+     * @param visibility Link.NONE, Link.VISITED or Link.INPATH
+     */
+    public void setVisibility(Link l, int visibility) {
+        if (l.visibility == visibility) return;
+        l.visibility = visibility;
+        if (visibility == Link.VISITED) {
+            visitedLinks.add(l);
+        } else if (visibility == Link.INPATH) {
+            pathLinks.add(l);
+        }
     }
 
     /**
@@ -89,6 +236,8 @@ public class Map {
         for (Link l : links) {
             l.visibility = Link.NONE;
         }
+        visitedLinks = new Vector<Link>();
+        pathLinks = new Vector<Link>();
     }
 
     /**
@@ -106,10 +255,12 @@ public class Map {
     /**
      * Loads a map.
      *
-     * @param mapID The map to load
+     * @param mapID The map to load: "1" or "2" for the built-in maps, otherwise
+     *              the path to a map file
      */
     public void load(String mapID) {
         this.mapID = mapID;
+        this.cont = null;
         readMap();
     }
 
@@ -127,18 +278,135 @@ public class Map {
         try {
             nodes = new Vector<Node>();
             links = new Vector<Link>();
+            visitedLinks = new Vector<Link>();
+            pathLinks = new Vector<Link>();
+            nodeGrid.clear();
+            linkGrid.clear();
+            nodeIndex.clear();
+            linkIndex = null;
+            adjacencyDirty = true;
+            graph = null;
+            noChanges++;
+            landmarks = null;
 
-            String[] cont = null;
-            if (mapID.equals("1")) cont = Map1.cont;
-            if (mapID.equals("2")) cont = Map2.cont;
+            String[] cont = this.cont;
+            if (cont == null && mapID.equals("1")) cont = Map1.cont;
+            if (cont == null && mapID.equals("2")) cont = Map2.cont;
 
+            loadPositions = new LongHashSet();
+            loadLinks = new LongHashSet();
             if (cont != null) {
                 for (String l : cont) {
                     parseLine(l);
                 }
+            } else if (MappedGraph.isGraphFile(mapID)) {
+                readGraph(MappedGraph.open(mapID, true));
+            } else {
+                MapTokenizer in = new MapTokenizer(new FileReader(mapID));
+                try {
+                    while (in.nextLine()) {
+                        parseLine(in);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            updateAdjacency();
+            if (cont == null && new File(mapID + Landmarks.EXTENSION).exists()) {
+                readLandmarks();
             }
         } catch (Exception ex) {
             ex.printStackTrace();
+        } finally {
+            loadPositions = null;
+            loadLinks = null;
+        }
+    }
+
+    /**
+     * Reads the landmarks saved next to the map file. The landmarks are not
+     * used if they can't be read or were selected for another map.
+     */
+    private void readLandmarks() {
+        try {
+            landmarks = Landmarks.read(mapID + Landmarks.EXTENSION, getGraph());
+            landmarksGraph = graph;
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the landmarks for the ALT heuristic.
+     *
+     * @return The landmarks, or null if none are selected or the map has
+     * changed since they were selected
+     */
+    public Landmarks getLandmarks() {
+        if (landmarks == null) return null;
+
+        Graph g = getGraph();
+        if (g != landmarksGraph) {
+            //Only changes to the links make the landmarks invalid
+            if (!landmarks.matches(g)) {
+                landmarks = null;
+                return null;
+            }
+            landmarksGraph = g;
+        }
+        return landmarks;
+    }
+
+    /**
+     * Selects landmarks for the ALT heuristic. They are saved with the map.
+     *
+     * @param count    Number of landmarks
+     * @param strategy How to select the landmarks (see Landmarks)
+     */
+    public void selectLandmarks(int count, String strategy) {
+        landmarks = Landmarks.select(getGraph(), count, strategy, 1);
+        landmarksGraph = graph;
+    }
+
+    /**
+     * Saves the landmarks next to a map file, if there are any.
+     *
+     * @param filename The map file
+     * @throws IOException if the file can't be written
+     */
+    private void saveLandmarks(String filename) throws IOException {
+        if (getLandmarks() != null) {
+            landmarks.write(filename + Landmarks.EXTENSION);
+        }
+    }
+
+    /**
+     * Adds the nodes and links of a graph read from a graph file.
+     * <p>
+     * A map can be edited and shows each link, so the whole graph is copied
+     * onto the heap as Node and Link objects. Only searches on the
+     * MappedGraph itself, as in BatchRunner and the benchmarks, read the
+     * graph without copying it.
+     *
+     * @param g The graph
+     */
+    private void readGraph(MappedGraph g) {
+        costFunction = g.getCostFunction();
+        Node[] n = new Node[g.getNodeCount()];
+        for (int i = 0; i < n.length; i++) {
+            n[i] = g.getNode(i);
+            nodes.add(n[i]);
+            nodeIndex.putIfAbsent(n[i].label, n[i]);
+            addToGrid(n[i]);
+        }
+        for (int i = 0; i < n.length; i++) {
+            for (int e = g.getOutOffset(i); e < g.getOutOffset(i + 1); e++) {
+                Link l = new Link(n[i], n[g.getOutTarget(e)]);
+                l.weight = g.getOutWeight(e);
+                l.explicitWeight = g.isExplicitWeight(e);
+                links.add(l);
+                addToGrid(l);
+            }
         }
     }
 
@@ -148,30 +416,60 @@ public class Map {
      * @param line The line to parse
      */
     public void parseLine(String line) {
+        if (lineTokenizer == null) {
+            lineTokenizer = new MapTokenizer();
+        }
+        lineTokenizer.setLine(line);
+        parseLine(lineTokenizer);
+    }
+
+    /**
+     * Parses the current line of a tokenizer.
+     *
+     * @param t The tokenizer
+     */
+    private void parseLine(MapTokenizer t) {
         try {
-            String[] tokens = line.split(" ");
-            if (line.startsWith("Node") && tokens.length == 4) {
-                String label = tokens[1];
-                int x = Integer.parseInt(tokens[2]);
-                int y = Integer.parseInt(tokens[3]);
+            int no = t.getTokenCount();
+            if (no == 0) return;
+
+            if (t.tokenEquals(0, "Node") && no == 4) {
+                String label = t.getString(1);
+                int x = t.getInt(2);
+                int y = t.getInt(3);
                 addNode(new Node(x, y, label));
             }
-            if (line.startsWith("Link") && tokens.length == 3) {
-                Node a = findNode(tokens[1]);
-                Node b = findNode(tokens[2]);
+            if (t.tokenEquals(0, "Link") && (no == 3 || no == 4)) {
+                Node a = findNode(t, 1);
+                Node b = findNode(t, 2);
                 if (a != null && b != null) {
-                    addLink(new Link(a, b));
-                    addLink(new Link(b, a));
+                    Link l1 = new Link(a, b);
+                    Link l2 = new Link(b, a);
+                    //Optional explicit weight
+                    if (no == 4) {
+                        double w = t.getDouble(3);
+                        //Searches assume weights are never negative
+                        if (!isValidWeight(w)) {
+                            throw new IllegalArgumentException("Invalid link weight " + w + " for link "
+                                    + a.label + "-" + b.label + ", the link is skipped");
+                        }
+                        l1.weight = w;
+                        l1.explicitWeight = true;
+                        l2.weight = w;
+                        l2.explicitWeight = true;
+                    }
+                    addLink(l1);
+                    addLink(l2);
                 }
             }
-            if (line.startsWith("Start") && tokens.length == 2) {
-                Node n = findNode(tokens[1]);
+            if (t.tokenEquals(0, "Start") && no == 2) {
+                Node n = findNode(t, 1);
                 if (n != null) {
                     n.isStart = true;
                 }
             }
-            if (line.startsWith("End") && tokens.length == 2) {
-                Node n = findNode(tokens[1]);
+            if (t.tokenEquals(0, "End") && no == 2) {
+                Node n = findNode(t, 1);
                 if (n != null) {
                     n.isEnd = true;
                 }
@@ -181,6 +479,101 @@ public class Map {
         }
     }
 
+    /**
+     * Checks if a link weight can be used by the searches, which is when it
+     * is a finite number that is not negative.
+     *
+     * @param w The weight
+     * @return True if the weight can be used
+     */
+    public static boolean isValidWeight(double w) {
+        return w >= 0 && !Double.isInfinite(w);
+    }
+
+    /**
+     * Finds the node with the label given by a token.
+     *
+     * @param t The tokenizer
+     * @param i Index of the token
+     * @return The node, or null if not found
+     */
+    private Node findNode(MapTokenizer t, int i) {
+        return nodeIndex.get(t.getBuffer(), t.getTokenStart(i), t.getTokenLength(i));
+    }
+
+    /**
+     * Returns the map currently loaded.
+     *
+     * @return "1" or "2" for the built-in maps, otherwise the path to the map
+     * file. Null if the map was not loaded from a file or built-in map.
+     */
+    public String getMapID() {
+        if (cont != null) return null;
+        return mapID;
+    }
+
+    /**
+     * Saves the map to a file in the map file format, or as a binary graph
+     * file if the file name ends with .graph (see MappedGraph). The map is
+     * reloaded from this file by reload(). Selected landmarks are saved next
+     * to the map file.
+     *
+     * @param filename The file to save to
+     * @throws IOException if the file can't be written
+     */
+    public void save(String filename) throws IOException {
+        if (filename.toLowerCase().endsWith(MappedGraph.EXTENSION)) {
+            saveGraph(filename);
+            return;
+        }
+
+        updateAdjacency();
+        BufferedWriter out = new BufferedWriter(new FileWriter(filename));
+        try {
+            for (Node n : nodes) {
+                out.write("Node " + n.label + " " + n.x + " " + n.y + "\n");
+            }
+            for (Node n : nodes) {
+                if (n.isStart) out.write("Start " + n.label + "\n");
+                if (n.isEnd) out.write("End " + n.label + "\n");
+            }
+            for (Link l : links) {
+                //Links are read in both directions, so the link from the
+                //node with the higher id is skipped if there is one back
+                if (l.a.id > l.b.id && getLink(l.b, l.a) != l) continue;
+                if (l.explicitWeight) {
+                    out.write("Link " + l.a.label + " " + l.b.label + " " + l.weight + "\n");
+                } else {
+                    out.write("Link " + l.a.label + " " + l.b.label + "\n");
+                }
+            }
+        } finally {
+            out.close();
+        }
+        saveLandmarks(filename);
+        this.mapID = filename;
+        this.cont = null;
+    }
+
+    /**
+     * Saves the map to a binary graph file (see MappedGraph). The map is
+     * reloaded from this file by reload().
+     *
+     * @param filename The file to save to
+     * @throws IOException if the file can't be written
+     */
+    public void saveGraph(String filename) throws IOException {
+        Graph g = getGraph();
+        boolean[] explicit = new boolean[adjLinks.length];
+        for (int e = 0; e < adjLinks.length; e++) {
+            explicit[e] = adjLinks[e].explicitWeight;
+        }
+        MappedGraph.write(g, explicit, filename);
+        saveLandmarks(filename);
+        this.mapID = filename;
+        this.cont = null;
+    }
+
     /**
      * Dumps the map to code. Used when creating new maps in the GUI.
      */
@@ -204,7 +597,11 @@ public class Map {
             if (l1.equals(pl1) && l2.equals(pl2)) show = false;
             if (l1.equals(pl2) && l2.equals(pl1)) show = false;
             if (show) {
-                System.out.println("\t\t\"Link " + l1 + " " + l2 + "\",");
+                if (l.explicitWeight) {
+                    System.out.println("\t\t\"Link " + l1 + " " + l2 + " " + l.weight + "\",");
+                } else {
+                    System.out.println("\t\t\"Link " + l1 + " " + l2 + "\",");
+                }
 
                 pl1 = l1;
                 pl2 = l2;
@@ -216,19 +613,42 @@ public class Map {
      * Adds a new node. Used when load the map from file.
      *
      * @param n The node to add
+     * @return True if the node was added, false if there already is a node
+     * at the same position
      */
-    private void addNode(Node n) {
+    private boolean addNode(Node n) {
         boolean found = false;
-        for (Node nn : nodes) {
-            if (nn.equals(n)) {
-                found = true;
-                break;
+        if (loadPositions != null) {
+            found = !loadPositions.add(getPositionKey(n.x, n.y));
+        } else {
+            for (Node nn : nodes) {
+                if (nn.equals(n)) {
+                    found = true;
+                    break;
+                }
             }
         }
 
         if (!found) {
+            if (loadPositions != null) {
+                //Nodes are only added while loading, so this is the id the
+                //node gets when the adjacency structure is built
+                n.id = nodes.size();
+            }
             nodes.add(n);
+            nodeIndex.putIfAbsent(n.label, n);
+            addToGrid(n);
+            adjacencyDirty = true;
+            noChanges++;
         }
+        return !found;
+    }
+
+    /**
+     * Packs a position into a long, used as key in loadPositions.
+     */
+    private static long getPositionKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
     }
 
     /**
@@ -266,15 +686,30 @@ public class Map {
      */
     private void addLink(Link l) {
         boolean found = false;
-        for (Link ll : links) {
-            if (ll.equals(l)) {
-                found = true;
-                break;
+        if (loadLinks != null) {
+            //Nodes at the same position are never added while loading, so
+            //links between the same node ids are equal
+            found = !loadLinks.add(((long) l.a.id << 32) | (l.b.id & 0xffffffffL));
+        } else {
+            for (Link ll : links) {
+                if (ll.equals(l)) {
+                    found = true;
+                    break;
+                }
             }
         }
 
         if (!found) {
+            if (!l.explicitWeight) {
+                l.weight = costFunction.getCost(l.a, l.b);
+            }
             links.add(l);
+            if (linkIndex != null) {
+                linkIndex.putIfAbsent(l.getLabel(), l);
+            }
+            addToGrid(l);
+            adjacencyDirty = true;
+            noChanges++;
         }
     }
 
@@ -285,31 +720,42 @@ public class Map {
      * @return True if the node was successfully removed, falst otherwise
      */
     public boolean removeNode(String label) {
-        boolean ok = false;
+        if (nodeIndex.get(label) == null) {
+            return false;
+        }
 
-        for (int i = 0; i < links.size(); i++) {
-            Link l = links.elementAt(i);
-            if (l.a.label.equalsIgnoreCase(label)) {
-                links.remove(i);
-                ok = true;
-                i--;
-            }
-            if (l.b.label.equalsIgnoreCase(label)) {
-                links.remove(i);
-                ok = true;
-                i--;
+        //Keep the links and nodes not connected to the label in a single
+        //pass. The nodes are indexed again since the removed label may be
+        //shared by nodes that are kept, and the link index is rebuilt when
+        //it is next needed.
+        Vector<Link> keptLinks = new Vector<Link>(links.size());
+        for (Link l : links) {
+            if (!l.a.label.equalsIgnoreCase(label) && !l.b.label.equalsIgnoreCase(label)) {
+                keptLinks.add(l);
+            } else {
+                l.visibility = Link.NONE;
+                removeFromGrid(l);
             }
         }
+        links = keptLinks;
+        linkIndex = null;
+        removeHiddenLinks();
 
-        for (int i = 0; i < nodes.size(); i++) {
-            Node n = nodes.elementAt(i);
-            if (n.label.equalsIgnoreCase(label)) {
-                nodes.remove(i);
-                ok = true;
-                i--;
+        Vector<Node> keptNodes = new Vector<Node>(nodes.size());
+        nodeIndex.clear();
+        for (Node n : nodes) {
+            if (!n.label.equalsIgnoreCase(label)) {
+                keptNodes.add(n);
+                nodeIndex.putIfAbsent(n.label, n);
+            } else {
+                removeFromGrid(n);
             }
         }
-        return ok;
+        nodes = keptNodes;
+
+        adjacencyDirty = true;
+        noChanges++;
+        return true;
     }
 
     /**
@@ -321,13 +767,16 @@ public class Map {
      * @return True if the node was successfully added, false otherwise
      */
     public boolean addNode(int x, int y, String label) {
-        for (Node n : nodes) {
-            if (n.label.equals(label)) {
-                JOptionPane.showMessageDialog(null, "A node with label '" + label + "' already exists", "Error", JOptionPane.WARNING_MESSAGE);
-                return false;
-            }
+        if (nodeIndex.get(label) != null) {
+            JOptionPane.showMessageDialog(null, "A node with label '" + label + "' already exists", "Error", JOptionPane.WARNING_MESSAGE);
+            return false;
         }
-        nodes.add(new Node(x, y, label));
+        Node n = new Node(x, y, label);
+        nodes.add(n);
+        nodeIndex.put(label, n);
+        addToGrid(n);
+        adjacencyDirty = true;
+        noChanges++;
         return true;
     }
 
@@ -342,8 +791,20 @@ public class Map {
         Node n1 = findNode(node1);
         Node n2 = findNode(node2);
         if (n1 != null && n2 != null) {
-            links.add(new Link(n1, n2));
-            links.add(new Link(n2, n1));
+            Link l1 = new Link(n1, n2);
+            l1.weight = costFunction.getCost(n1, n2);
+            links.add(l1);
+            Link l2 = new Link(n2, n1);
+            l2.weight = costFunction.getCost(n2, n1);
+            links.add(l2);
+            if (linkIndex != null) {
+                linkIndex.putIfAbsent(l1.getLabel(), l1);
+                linkIndex.putIfAbsent(l2.getLabel(), l2);
+            }
+            addToGrid(l1);
+            addToGrid(l2);
+            adjacencyDirty = true;
+            noChanges++;
         } else {
             if (n1 == null)
                 JOptionPane.showMessageDialog(null, "Unable to find node with label '" + node1 + "'", "Error", JOptionPane.WARNING_MESSAGE);
@@ -365,34 +826,134 @@ public class Map {
         String[] t = l1.split("-");
         String l2 = t[1] + "-" + t[0];
 
-        boolean ok = false;
+        if (findLink(l1) == null && findLink(l2) == null) {
+            return false;
+        }
 
-        for (int i = 0; i < links.size(); i++) {
-            Link l = links.elementAt(i);
-            if (l.getLabel().equalsIgnoreCase(l1) || l.getLabel().equalsIgnoreCase(l2)) {
-                links.remove(i);
-                ok = true;
-                i--;
+        Vector<Link> kept = new Vector<Link>(links.size());
+        linkIndex.clear();
+        for (Link l : links) {
+            if (!l.getLabel().equalsIgnoreCase(l1) && !l.getLabel().equalsIgnoreCase(l2)) {
+                kept.add(l);
+                linkIndex.putIfAbsent(l.getLabel(), l);
+            } else {
+                l.visibility = Link.NONE;
+                removeFromGrid(l);
             }
         }
-        return ok;
+        links = kept;
+        removeHiddenLinks();
+        adjacencyDirty = true;
+        noChanges++;
+        return true;
     }
 
     /**
-     * Finds the node with the specified label.
+     * Removes the links that are no longer shown from the lists of visited
+     * links and links in the path.
+     */
+    private void removeHiddenLinks() {
+        Vector<Link> visited = new Vector<Link>();
+        for (Link l : visitedLinks) {
+            if (l.visibility == Link.VISITED) visited.add(l);
+        }
+        visitedLinks = visited;
+        Vector<Link> inPath = new Vector<Link>();
+        for (Link l : pathLinks) {
+            if (l.visibility == Link.INPATH) inPath.add(l);
+        }
+        pathLinks = inPath;
+    }
+
+    /**
+     * Finds the nodes in an area of the map.
      *
-     * @param label The label of the node
-     * @return The node, or null if not found
+     * @param x1     Lowest x-coordinate of the area
+     * @param y1     Lowest y-coordinate of the area
+     * @param x2     Highest x-coordinate of the area
+     * @param y2     Highest y-coordinate of the area
+     * @param result The nodes found are added to this list, in the same
+     *               order as in the node list
      */
-    private Node findNode(String label) {
-        for (Node n : nodes) {
-            if (n.label.equalsIgnoreCase(label)) {
+    public void findNodes(int x1, int y1, int x2, int y2, Vector<Node> result) {
+        if (nodeGrid.isAllInside(x1, y1, x2, y2)) {
+            result.addAll(nodes);
+            return;
+        }
+        int first = result.size();
+        nodeGrid.find(x1, y1, x2, y2, result);
+        updateAdjacency();
+        Collections.sort(result.subList(first, result.size()), NODE_ORDER);
+    }
+
+    /**
+     * Finds the links that may cross an area of the map, which are the links
+     * whose two nodes are in a box that overlaps the area.
+     *
+     * @param x1     Lowest x-coordinate of the area
+     * @param y1     Lowest y-coordinate of the area
+     * @param x2     Highest x-coordinate of the area
+     * @param y2     Highest y-coordinate of the area
+     * @param result The links found are added to this list
+     */
+    public void findLinks(int x1, int y1, int x2, int y2, Vector<Link> result) {
+        if (linkGrid.isAllInside(x1, y1, x2, y2)) {
+            result.addAll(links);
+            return;
+        }
+        linkGrid.find(x1, y1, x2, y2, result);
+    }
+
+    /**
+     * Finds the first node in the node list within a distance of a position.
+     *
+     * @param x      X-coordinate
+     * @param y      Y-coordinate
+     * @param radius Largest distance to the node
+     * @return The node, or null if there is no node within the distance
+     */
+    public Node findNodeAt(double x, double y, double radius) {
+        Vector<Node> found = new Vector<Node>();
+        findNodes((int) Math.floor(x - radius), (int) Math.floor(y - radius),
+                (int) Math.ceil(x + radius), (int) Math.ceil(y + radius), found);
+        for (Node n : found) {
+            double dx = n.x - x;
+            double dy = n.y - y;
+            //Positions at the distance count as within it, also when the
+            //position has been rounded when converted to map coordinates
+            if (dx * dx + dy * dy <= radius * radius * (1 + 1e-9)) {
                 return n;
             }
         }
         return null;
     }
 
+    private void addToGrid(Node n) {
+        nodeGrid.add(n, n.x, n.y, n.x, n.y);
+    }
+
+    private void removeFromGrid(Node n) {
+        nodeGrid.remove(n, n.x, n.y, n.x, n.y);
+    }
+
+    private void addToGrid(Link l) {
+        linkGrid.add(l, Math.min(l.a.x, l.b.x), Math.min(l.a.y, l.b.y), Math.max(l.a.x, l.b.x), Math.max(l.a.y, l.b.y));
+    }
+
+    private void removeFromGrid(Link l) {
+        linkGrid.remove(l, Math.min(l.a.x, l.b.x), Math.min(l.a.y, l.b.y), Math.max(l.a.x, l.b.x), Math.max(l.a.y, l.b.y));
+    }
+
+    /**
+     * Finds the node with the specified label.
+     *
+     * @param label The label of the node
+     * @return The node, or null if not found
+     */
+    private Node findNode(String label) {
+        return nodeIndex.get(label);
+    }
+
     /**
      * Finds the link with the specified label.
      *
@@ -400,12 +961,13 @@ public class Map {
      * @return The link, or null if not found
      */
     public Link findLink(String label) {
-        for (Link l : links) {
-            if (l.getLabel().equalsIgnoreCase(label)) {
-                return l;
+        if (linkIndex == null) {
+            linkIndex = new LabelIndex<Link>();
+            for (Link l : links) {
+                linkIndex.putIfAbsent(l.getLabel(), l);
             }
         }
-        return null;
+        return linkIndex.get(label);
     }
 
     /**
@@ -426,6 +988,8 @@ public class Map {
      * @param label The label of the new start node
      */
     public void setAsStartNode(String label) {
+        graph = null;
+        noChanges++;
         for (Node n : nodes) {
             n.isStart = false;
             if (n.label.equals(label)) {
@@ -452,6 +1016,8 @@ public class Map {
      * @param label The end of the new start node
      */
     public void setAsEndNode(String label) {
+        graph = null;
+        noChanges++;
         for (Node n : nodes) {
             n.isEnd = false;
             if (n.label.equals(label)) {
@@ -468,17 +1034,112 @@ public class Map {
      * @return The link between the nodes, or null if no link was found
      */
     public Link getLink(Node a, Node b) {
-        for (Link l : links) {
-            if (l.a == a && l.b == b) {
+        int no = getOutDegree(a);
+        for (int i = 0; i < no; i++) {
+            Link l = getOutLink(a, i);
+            if (l.b.equals(b)) {
                 return l;
             }
-            if (l.b == a && l.a == b) {
+        }
+        no = getOutDegree(b);
+        for (int i = 0; i < no; i++) {
+            Link l = getOutLink(b, i);
+            if (l.b.equals(a)) {
                 return l;
             }
         }
         return null;
     }
 
+    /**
+     * Returns the weight of the link going from node a to node b.
+     *
+     * @param a First node
+     * @param b Second node
+     * @return The weight of the link, or the cost given by the cost function if
+     * the nodes are not linked
+     */
+    public double getLinkWeight(Node a, Node b) {
+        int no = getOutDegree(a);
+        for (int i = 0; i < no; i++) {
+            Link l = getOutLink(a, i);
+            if (l.b.equals(b)) {
+                return l.weight;
+            }
+        }
+        return costFunction.getCost(a, b);
+    }
+
+    /**
+     * Returns the cost function used to calculate link weights.
+     *
+     * @return The cost function
+     */
+    public EdgeCostFunction getCostFunction() {
+        return costFunction;
+    }
+
+    /**
+     * Changes the cost function and recalculates the weights of all links
+     * that have no explicit weight.
+     *
+     * @param costFunction The new cost function
+     */
+    public void setCostFunction(EdgeCostFunction costFunction) {
+        this.costFunction = costFunction;
+        graph = null;
+        noChanges++;
+        for (Link l : links) {
+            if (!l.explicitWeight) {
+                l.weight = costFunction.getCost(l.a, l.b);
+            }
+        }
+    }
+
+    /**
+     * Moves a node to a new position and recalculates the weights of the links
+     * connected to it. Used by the GUI when the user drags a node around.
+     *
+     * @param n The node to move
+     * @param x New X-coordinate
+     * @param y New Y-coordinate
+     */
+    public void moveNode(Node n, int x, int y) {
+        //The links going to the node are found among the links of its
+        //neighbors, since links are always added in both directions
+        Vector<Link> moved = new Vector<Link>();
+        int no = getOutDegree(n);
+        for (int i = 0; i < no; i++) {
+            Link l = getOutLink(n, i);
+            moved.add(l);
+            int nob = getOutDegree(l.b);
+            for (int j = 0; j < nob; j++) {
+                Link lb = getOutLink(l.b, j);
+                if (lb.b == n) {
+                    moved.add(lb);
+                }
+            }
+        }
+
+        //The node and its links are indexed by position, so they are
+        //indexed again at the new position
+        removeFromGrid(n);
+        for (Link l : moved) {
+            removeFromGrid(l);
+        }
+        n.x = x;
+        n.y = y;
+        graph = null;
+        noChanges++;
+        addToGrid(n);
+        for (Link l : moved) {
+            addToGrid(l);
+            if (!l.explicitWeight) {
+                l.weight = costFunction.getCost(l.a, l.b);
+            }
+        }
+    }
+
     /**
      * Returns all the links going to and from the specified node.
      *
@@ -494,4 +1155,158 @@ public class Map {
         }
         return c;
     }
+
+    /**
+     * Rebuilds the adjacency structure if the nodes or links have changed since
+     * it was last built. Node ids are reassigned to match the node positions
+     * in the node list. Links keep their relative order within each node, so
+     * neighbors are returned in the same order as they appear in the link list.
+     */
+    public void updateAdjacency() {
+        if (!adjacencyDirty) return;
+
+        int noNodes = nodes.size();
+        for (int i = 0; i < noNodes; i++) {
+            nodes.elementAt(i).id = i;
+        }
+
+        //Count the outgoing links for each node
+        adjOffset = new int[noNodes + 1];
+        for (Link l : links) {
+            adjOffset[l.a.id + 1]++;
+        }
+        for (int i = 0; i < noNodes; i++) {
+            adjOffset[i + 1] += adjOffset[i];
+        }
+
+        //Fill in the links, keeping the link list order for each node
+        adjTarget = new int[links.size()];
+        adjLinks = new Link[links.size()];
+        int[] next = new int[noNodes];
+        System.arraycopy(adjOffset, 0, next, 0, noNodes);
+        for (Link l : links) {
+            int pos = next[l.a.id]++;
+            adjTarget[pos] = l.b.id;
+            adjLinks[pos] = l;
+        }
+
+        adjacencyDirty = false;
+        graph = null;
+    }
+
+    /**
+     * Returns the number of links going out from the specified node.
+     *
+     * @param n The node
+     * @return Number of outgoing links
+     */
+    public int getOutDegree(Node n) {
+        updateAdjacency();
+        return adjOffset[n.id + 1] - adjOffset[n.id];
+    }
+
+    /**
+     * Returns an outgoing link from the specified node.
+     *
+     * @param n The node
+     * @param i Index of the link, between 0 and getOutDegree(n) - 1
+     * @return The link
+     */
+    public Link getOutLink(Node n, int i) {
+        updateAdjacency();
+        return adjLinks[adjOffset[n.id] + i];
+    }
+
+    /**
+     * Returns the node an outgoing link from the specified node leads to.
+     *
+     * @param n The node
+     * @param i Index of the link, between 0 and getOutDegree(n) - 1
+     * @return The connected node
+     */
+    public Node getOutNode(Node n, int i) {
+        updateAdjacency();
+        return nodes.elementAt(adjTarget[adjOffset[n.id] + i]);
+    }
+
+    /**
+     * Returns the number of nodes in the map. Node ids are between 0 and
+     * this number - 1.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node with the specified id.
+     *
+     * @param id The node id
+     * @return The node
+     */
+    public Node getNode(int id) {
+        return nodes.elementAt(id);
+    }
+
+    /**
+     * Returns the index of the first outgoing link of the node with the specified id.
+     * The outgoing links of node id are the link indices from getOutOffset(id) up to,
+     * but not including, getOutOffset(id + 1).
+     *
+     * @param id The node id (or the number of nodes, for the end of the last node's links)
+     * @return Index of the first outgoing link
+     */
+    public int getOutOffset(int id) {
+        updateAdjacency();
+        return adjOffset[id];
+    }
+
+    /**
+     * Returns the id of the node an outgoing link leads to.
+     *
+     * @param e Index of the link
+     * @return The node id
+     */
+    public int getOutTarget(int e) {
+        return adjTarget[e];
+    }
+
+    /**
+     * Returns the weight of an outgoing link.
+     *
+     * @param e Index of the link
+     * @return The link weight
+     */
+    public double getOutWeight(int e) {
+        return adjLinks[e].weight;
+    }
+
+    /**
+     * Returns an outgoing link.
+     *
+     * @param e Index of the link
+     * @return The link
+     */
+    public Link getOutLink(int e) {
+        return adjLinks[e];
+    }
+
+    /**
+     * Returns an immutable snapshot of the map to run searches on. The snapshot
+     * is created when the map has changed since the last call.
+     *
+     * @return The graph
+     */
+    public Graph getGraph() {
+        updateAdjacency();
+        if (graph == null) {
+            double[] weight = new double[adjLinks.length];
+            for (int e = 0; e < adjLinks.length; e++) {
+                weight[e] = adjLinks[e].weight;
+            }
+            graph = new Graph(nodes.toArray(new Node[nodes.size()]), adjOffset, adjTarget, weight, costFunction);
+        }
+        return graph;
+    }
 }
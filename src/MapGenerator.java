@@ -0,0 +1,625 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Generates large random maps, used to test and profile the search methods
+ * on maps much bigger than the built-in ones. The generated map can be
+ * written in the map file format, loaded into a Map, or turned directly into
+ * a Graph. Creating the Graph directly is much faster and uses less memory
+ * than going through a Map, and is the way to go for maps with millions of
+ * nodes.
+ * <p>
+ * Four kinds of maps can be generated:
+ * <ul>
+ * <li>geometric: nodes at random positions, linked to all nodes within a
+ * radius chosen to give the requested average degree.</li>
+ * <li>grid: a grid where a fraction of the cells are obstacles without
+ * nodes. Nodes are linked to their left, right, up and down neighbors, and
+ * also diagonally if the requested degree is 8 or more.</li>
+ * <li>scalefree: preferential attachment (Barabási-Albert). Each new node is
+ * linked to degree / 2 existing nodes, chosen with probability proportional
+ * to their degree.</li>
+ * <li>road: a planar, road-like network. Nodes are placed on a jittered grid
+ * and linked to nearby nodes without crossing links. The network is always
+ * connected.</li>
+ * </ul>
+ * The same type, size, degree, obstacles and seed always give the same map.
+ * Node labels are numbers starting at 1. The first node is the start node and
+ * the last node is the end node.
+ * <p>
+ * Usage: <code>java MapGenerator &lt;type&gt; &lt;nodes&gt; [-seed n] [-degree d] [-obstacles f] [-o file]</code>
+ * <p>
+ * The map is written to standard output, or to the file given with -o. Files
+ * ending with .graph are written as binary graph files (see MappedGraph).
+ *
+ * @author Li Xiao
+ */
+public class MapGenerator {
+    public static final String GEOMETRIC = "geometric";
+    public static final String GRID = "grid";
+    public static final String SCALE_FREE = "scalefree";
+    public static final String ROAD = "road";
+
+    /**
+     * Default average number of links per node
+     */
+    public static final double DEFAULT_DEGREE = 4;
+    /**
+     * Default fraction of grid cells that are obstacles
+     */
+    public static final double DEFAULT_OBSTACLES = 0.2;
+
+    /**
+     * Number of nodes
+     */
+    private int noNodes = 0;
+    /**
+     * Coordinates of each node
+     */
+    private int[] x = new int[16];
+    private int[] y = new int[16];
+    /**
+     * Number of links. Each link goes in both directions.
+     */
+    private int noLinks = 0;
+    /**
+     * The two nodes of each link
+     */
+    private int[] linkA = new int[16];
+    private int[] linkB = new int[16];
+
+    /**
+     * Use the static methods to generate maps.
+     */
+    private MapGenerator() {
+    }
+
+    /**
+     * Generates a map of the specified type.
+     *
+     * @param type      The type of map: geometric, grid, scalefree or road
+     * @param size      Number of nodes (for grids, the number of cells including obstacles)
+     * @param degree    Average number of links per node
+     * @param obstacles Fraction of grid cells that are obstacles, only used for grids
+     * @param seed      Seed for the random number generator
+     * @return The generated map
+     * @throws IllegalArgumentException if the type is unknown
+     */
+    public static MapGenerator create(String type, int size, double degree, double obstacles, long seed) {
+        if (type.equalsIgnoreCase(GEOMETRIC)) return randomGeometric(size, degree, seed);
+        if (type.equalsIgnoreCase(GRID)) return grid(size, obstacles, degree >= 8, seed);
+        if (type.equalsIgnoreCase(SCALE_FREE)) return scaleFree(size, Math.max(1, (int) Math.round(degree / 2)), seed);
+        if (type.equalsIgnoreCase(ROAD)) return roadLike(size, degree, seed);
+        throw new IllegalArgumentException("Unknown map type '" + type + "'");
+    }
+
+    /**
+     * Generates a random geometric map. Nodes are placed at random positions
+     * and linked to all other nodes within a fixed radius. The map is not
+     * always connected, especially for low degrees.
+     *
+     * @param noNodes Number of nodes
+     * @param degree  Average number of links per node
+     * @param seed    Seed for the random number generator
+     * @return The generated map
+     */
+    public static MapGenerator randomGeometric(int noNodes, double degree, long seed) {
+        Random rnd = new Random(seed);
+        MapGenerator g = new MapGenerator();
+        int side = g.placeRandom(noNodes, 16, rnd);
+
+        //Nodes are on integer positions, so count the positions within each
+        //squared radius to find the one giving the expected number of neighbors
+        //closest to the requested degree
+        double density = (double) noNodes / ((double) side * side);
+        int r2 = 0;
+        int inside = 0;
+        while (true) {
+            int more = 0;
+            int k = r2 + 1;
+            for (int dx = (int) Math.sqrt(k); dx >= -Math.sqrt(k); dx--) {
+                int dy2 = k - dx * dx;
+                int dy = (int) Math.round(Math.sqrt(dy2));
+                if (dy * dy == dy2) more += dy == 0 ? 1 : 2;
+            }
+            if (Math.abs((inside + more) * density - degree) > Math.abs(inside * density - degree)) break;
+            inside += more;
+            r2 = k;
+        }
+        double r = Math.sqrt(r2);
+        int cellSize = Math.max(1, (int) Math.ceil(r));
+        int noCells = side / cellSize + 1;
+
+        //Sort the nodes into square cells as large as the radius, so only
+        //the nodes in the surrounding cells must be checked
+        int[] cellStart = new int[noCells * noCells + 1];
+        for (int i = 0; i < noNodes; i++) {
+            cellStart[g.cell(i, cellSize, noCells) + 1]++;
+        }
+        for (int c = 0; c < noCells * noCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cellNodes = new int[noNodes];
+        int[] next = new int[noCells * noCells];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for (int i = 0; i < noNodes; i++) {
+            cellNodes[next[g.cell(i, cellSize, noCells)]++] = i;
+        }
+
+        for (int i = 0; i < noNodes; i++) {
+            int cx = g.x[i] / cellSize;
+            int cy = g.y[i] / cellSize;
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(noCells - 1, cy + 1); ny++) {
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(noCells - 1, cx + 1); nx++) {
+                    int c = ny * noCells + nx;
+                    for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                        int j = cellNodes[k];
+                        if (j <= i) continue;
+                        int dx = g.x[i] - g.x[j];
+                        int dy = g.y[i] - g.y[j];
+                        if (dx * dx + dy * dy <= r2) {
+                            g.addLink(i, j);
+                        }
+                    }
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Generates a grid with obstacles. Each cell that is not an obstacle has
+     * a node, linked to the nodes in the neighboring cells.
+     *
+     * @param noCells   Number of cells in the grid, including obstacles
+     * @param obstacles Fraction of the cells that are obstacles (0 - 1)
+     * @param diagonal  True if nodes are also linked to their diagonal neighbors
+     * @param seed      Seed for the random number generator
+     * @return The generated map
+     */
+    public static MapGenerator grid(int noCells, double obstacles, boolean diagonal, long seed) {
+        Random rnd = new Random(seed);
+        MapGenerator g = new MapGenerator();
+        int width = (int) Math.ceil(Math.sqrt(noCells));
+
+        //Node id in each cell, -1 for obstacles
+        int[] cellNode = new int[noCells];
+        for (int c = 0; c < noCells; c++) {
+            if (rnd.nextDouble() < obstacles) {
+                cellNode[c] = -1;
+            } else {
+                cellNode[c] = g.addNode(c % width, c / width);
+            }
+        }
+
+        for (int c = 0; c < noCells; c++) {
+            int n = cellNode[c];
+            if (n < 0) continue;
+            int cx = c % width;
+            if (cx < width - 1 && c + 1 < noCells && cellNode[c + 1] >= 0) {
+                g.addLink(n, cellNode[c + 1]);
+            }
+            if (c + width < noCells && cellNode[c + width] >= 0) {
+                g.addLink(n, cellNode[c + width]);
+            }
+            if (diagonal) {
+                if (cx < width - 1 && c + width + 1 < noCells && cellNode[c + width + 1] >= 0) {
+                    g.addLink(n, cellNode[c + width + 1]);
+                }
+                if (cx > 0 && c + width - 1 < noCells && cellNode[c + width - 1] >= 0) {
+                    g.addLink(n, cellNode[c + width - 1]);
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Generates a scale-free map by preferential attachment. Nodes are placed
+     * at random positions.
+     *
+     * @param noNodes      Number of nodes
+     * @param linksPerNode Number of existing nodes each new node is linked to
+     * @param seed         Seed for the random number generator
+     * @return The generated map
+     */
+    public static MapGenerator scaleFree(int noNodes, int linksPerNode, long seed) {
+        Random rnd = new Random(seed);
+        MapGenerator g = new MapGenerator();
+        g.placeRandom(noNodes, 4, rnd);
+
+        //Both nodes of every link, so picking a random entry picks a node
+        //with probability proportional to its degree
+        int[] ends = new int[2 * linksPerNode * noNodes];
+        int noEnds = 0;
+        int[] picked = new int[linksPerNode];
+        for (int i = 1; i < noNodes; i++) {
+            int noPicked = 0;
+            if (i <= linksPerNode) {
+                //Too few nodes to choose from, link to all of them
+                for (int j = 0; j < i; j++) {
+                    picked[noPicked++] = j;
+                }
+            } else {
+                while (noPicked < linksPerNode) {
+                    int j = ends[rnd.nextInt(noEnds)];
+                    boolean found = false;
+                    for (int k = 0; k < noPicked; k++) {
+                        if (picked[k] == j) {
+                            found = true;
+                            break;
+                        }
+                    }
+                    if (!found) {
+                        picked[noPicked++] = j;
+                    }
+                }
+            }
+            for (int k = 0; k < noPicked; k++) {
+                g.addLink(picked[k], i);
+                ends[noEnds++] = picked[k];
+                ends[noEnds++] = i;
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Generates a road-like map. Nodes are placed on a grid with some random
+     * jitter, and links are chosen among the links to the horizontal,
+     * vertical and one of the diagonal neighbors, so no links cross. A random
+     * spanning tree of these links is always included, which keeps the map
+     * connected, and the rest are included at random to give the requested
+     * average degree (at most 6).
+     *
+     * @param noNodes Number of nodes
+     * @param degree  Average number of links per node
+     * @param seed    Seed for the random number generator
+     * @return The generated map
+     */
+    public static MapGenerator roadLike(int noNodes, double degree, long seed) {
+        Random rnd = new Random(seed);
+        MapGenerator g = new MapGenerator();
+        int cols = (int) Math.ceil(Math.sqrt(noNodes));
+
+        //Each node stays within its own 4x4 grid cell, so positions are unique
+        for (int i = 0; i < noNodes; i++) {
+            g.addNode((i % cols) * 4 + 1 + rnd.nextInt(3), (i / cols) * 4 + 1 + rnd.nextInt(3));
+        }
+
+        //Candidate links
+        int[] ca = new int[3 * noNodes];
+        int[] cb = new int[3 * noNodes];
+        int noCand = 0;
+        for (int i = 0; i < noNodes; i++) {
+            boolean hasRight = i % cols < cols - 1 && i + 1 < noNodes;
+            boolean hasDown = i + cols < noNodes;
+            if (hasRight) {
+                ca[noCand] = i;
+                cb[noCand++] = i + 1;
+            }
+            if (hasDown) {
+                ca[noCand] = i;
+                cb[noCand++] = i + cols;
+            }
+            if (hasRight && i + cols + 1 < noNodes) {
+                //One of the two diagonals of the cell
+                if (rnd.nextBoolean()) {
+                    ca[noCand] = i;
+                    cb[noCand++] = i + cols + 1;
+                } else {
+                    ca[noCand] = i + 1;
+                    cb[noCand++] = i + cols;
+                }
+            }
+        }
+
+        //Random spanning tree: take the candidates in random order and keep
+        //those that join two separate parts (Kruskal)
+        int[] order = new int[noCand];
+        for (int i = 0; i < noCand; i++) {
+            order[i] = i;
+        }
+        for (int i = noCand - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] root = new int[noNodes];
+        for (int i = 0; i < noNodes; i++) {
+            root[i] = i;
+        }
+        boolean[] keep = new boolean[noCand];
+        int noTree = 0;
+        for (int k = 0; k < noCand; k++) {
+            int c = order[k];
+            int ra = findRoot(root, ca[c]);
+            int rb = findRoot(root, cb[c]);
+            if (ra != rb) {
+                root[ra] = rb;
+                keep[c] = true;
+                noTree++;
+            }
+        }
+
+        //Add the other links with the probability giving the requested degree
+        double extra = degree * noNodes / 2 - noTree;
+        double p = noCand > noTree ? extra / (noCand - noTree) : 0;
+        for (int c = 0; c < noCand; c++) {
+            if (keep[c] || rnd.nextDouble() < p) {
+                g.addLink(ca[c], cb[c]);
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Finds the root of a node in a union-find forest, halving the path on
+     * the way.
+     */
+    private static int findRoot(int[] root, int n) {
+        while (root[n] != n) {
+            root[n] = root[root[n]];
+            n = root[n];
+        }
+        return n;
+    }
+
+    /**
+     * Places nodes at unique random positions in a square.
+     *
+     * @param noNodes Number of nodes to place
+     * @param spread  Number of positions in the square per node
+     * @param rnd     The random number generator
+     * @return Side of the square
+     */
+    private int placeRandom(int noNodes, int spread, Random rnd) {
+        int side = (int) Math.ceil(Math.sqrt((double) spread * noNodes));
+        BitSet used = new BitSet(side * side);
+        for (int i = 0; i < noNodes; i++) {
+            int px, py;
+            do {
+                px = rnd.nextInt(side);
+                py = rnd.nextInt(side);
+            } while (used.get(py * side + px));
+            used.set(py * side + px);
+            addNode(px, py);
+        }
+        return side;
+    }
+
+    /**
+     * Returns the index of the cell a node is in.
+     */
+    private int cell(int n, int cellSize, int noCells) {
+        return (y[n] / cellSize) * noCells + x[n] / cellSize;
+    }
+
+    /**
+     * Adds a node.
+     *
+     * @return The node id
+     */
+    private int addNode(int px, int py) {
+        if (noNodes == x.length) {
+            x = grow(x);
+            y = grow(y);
+        }
+        x[noNodes] = px;
+        y[noNodes] = py;
+        return noNodes++;
+    }
+
+    /**
+     * Adds a link between two nodes.
+     */
+    private void addLink(int a, int b) {
+        if (noLinks == linkA.length) {
+            linkA = grow(linkA);
+            linkB = grow(linkB);
+        }
+        linkA[noLinks] = a;
+        linkB[noLinks] = b;
+        noLinks++;
+    }
+
+    /**
+     * Returns a copy of an array with twice the length.
+     */
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return Number of nodes
+     */
+    public int getNodeCount() {
+        return noNodes;
+    }
+
+    /**
+     * Returns the number of links. Each link goes in both directions.
+     *
+     * @return Number of links
+     */
+    public int getLinkCount() {
+        return noLinks;
+    }
+
+    /**
+     * Returns the label of a node.
+     */
+    private static String getLabel(int n) {
+        return "" + (n + 1);
+    }
+
+    /**
+     * Creates the nodes of the map, with the first node as start node and
+     * the last node as end node.
+     *
+     * @return The nodes, ordered by id
+     */
+    private Node[] createNodes() {
+        Node[] nodes = new Node[noNodes];
+        for (int i = 0; i < noNodes; i++) {
+            nodes[i] = new Node(x[i], y[i], getLabel(i));
+            nodes[i].id = i;
+        }
+        if (noNodes > 0) {
+            nodes[0].isStart = true;
+            nodes[noNodes - 1].isEnd = true;
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the map in the map file format, one line per element.
+     *
+     * @return The lines of the map
+     */
+    public String[] getLines() {
+        String[] lines = new String[noNodes + noLinks + 2];
+        int l = 0;
+        for (int i = 0; i < noNodes; i++) {
+            lines[l++] = "Node " + getLabel(i) + " " + x[i] + " " + y[i];
+        }
+        if (noNodes > 0) {
+            lines[l++] = "Start " + getLabel(0);
+            lines[l++] = "End " + getLabel(noNodes - 1);
+        }
+        for (int i = 0; i < noLinks; i++) {
+            lines[l++] = "Link " + getLabel(linkA[i]) + " " + getLabel(linkB[i]);
+        }
+        if (l < lines.length) {
+            String[] t = new String[l];
+            System.arraycopy(lines, 0, t, 0, l);
+            lines = t;
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the map in the map file format.
+     *
+     * @param out Where to write the map
+     * @throws IOException if the map can't be written
+     */
+    public void write(Writer out) throws IOException {
+        BufferedWriter w = new BufferedWriter(out);
+        for (int i = 0; i < noNodes; i++) {
+            w.write("Node " + getLabel(i) + " " + x[i] + " " + y[i] + "\n");
+        }
+        if (noNodes > 0) {
+            w.write("Start " + getLabel(0) + "\n");
+            w.write("End " + getLabel(noNodes - 1) + "\n");
+        }
+        for (int i = 0; i < noLinks; i++) {
+            w.write("Link " + getLabel(linkA[i]) + " " + getLabel(linkB[i]) + "\n");
+        }
+        w.flush();
+    }
+
+    /**
+     * Creates a map from the generated map, by parsing its lines like a map
+     * file. Only suitable for small maps; use toGraph() for large maps.
+     *
+     * @return The map
+     */
+    public Map toMap() {
+        return new Map(getLines());
+    }
+
+    /**
+     * Creates a graph from the generated map, without going through a Map.
+     * The graph is the same as toMap().getGraph() would return.
+     *
+     * @return The graph
+     */
+    public Graph toGraph() {
+        Node[] nodes = createNodes();
+
+        //Each link is stored in both directions, in the same order as the
+        //map file lists them
+        int[] offset = new int[noNodes + 1];
+        for (int i = 0; i < noLinks; i++) {
+            offset[linkA[i] + 1]++;
+            offset[linkB[i] + 1]++;
+        }
+        for (int i = 0; i < noNodes; i++) {
+            offset[i + 1] += offset[i];
+        }
+        int[] target = new int[2 * noLinks];
+        double[] weight = new double[2 * noLinks];
+        int[] next = new int[noNodes];
+        System.arraycopy(offset, 0, next, 0, noNodes);
+        EdgeCostFunction cost = EdgeCostFunction.EUCLIDEAN;
+        for (int i = 0; i < noLinks; i++) {
+            int a = linkA[i];
+            int b = linkB[i];
+            int e = next[a]++;
+            target[e] = b;
+            weight[e] = cost.getCost(nodes[a], nodes[b]);
+            e = next[b]++;
+            target[e] = a;
+            weight[e] = cost.getCost(nodes[b], nodes[a]);
+        }
+        return new Graph(nodes, offset, target, weight, cost);
+    }
+
+    /**
+     * @param args The map type, number of nodes and options
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java MapGenerator <geometric|grid|scalefree|road> <nodes> [-seed n] [-degree d] [-obstacles f] [-o file]");
+            System.exit(1);
+        }
+
+        try {
+            String type = args[0];
+            int size = Integer.parseInt(args[1]);
+            long seed = 1;
+            double degree = DEFAULT_DEGREE;
+            double obstacles = DEFAULT_OBSTACLES;
+            String file = null;
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for option '" + args[i] + "'");
+                if (args[i].equals("-seed")) seed = Long.parseLong(args[i + 1]);
+                else if (args[i].equals("-degree")) degree = Double.parseDouble(args[i + 1]);
+                else if (args[i].equals("-obstacles")) obstacles = Double.parseDouble(args[i + 1]);
+                else if (args[i].equals("-o")) file = args[i + 1];
+                else throw new IllegalArgumentException("Unknown option '" + args[i] + "'");
+            }
+
+            MapGenerator g = create(type, size, degree, obstacles, seed);
+            if (file != null && file.toLowerCase().endsWith(MappedGraph.EXTENSION)) {
+                MappedGraph.write(g.toGraph(), null, file);
+                System.err.println(g.getNodeCount() + " nodes, " + g.getLinkCount() + " links");
+                return;
+            }
+            Writer out = file != null ? new FileWriter(file) : new OutputStreamWriter(System.out);
+            try {
+                g.write(out);
+            } finally {
+                out.close();
+            }
+            System.err.println(g.getNodeCount() + " nodes, " + g.getLinkCount() + " links");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -1,63 +1,627 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 import java.util.Vector;
 
 /**
  * GUI panel for drawing the map.
+ * <p>
+ * The map without any shown links is drawn once into a background image,
+ * which is only drawn again when the map or the view is changed. The panel is
+ * drawn from a second image, which is a copy of the background with the shown
+ * links drawn on top. Links that are shown during a search are drawn into it
+ * as they are added, and only the part of the panel around them is repainted.
+ * <p>
+ * The map is drawn through a viewport that can be zoomed and panned, and only
+ * the nodes and links in view are drawn. When zoomed out so far that nodes
+ * can't be told apart, the nodes are drawn as shaded blocks showing how many
+ * there are, the links are drawn straight into the pixels of the background,
+ * and only the start and end nodes are drawn as nodes.
  *
  * @author Johan Hagelbäck
  */
 public class MapPanel extends JPanel {
+    /**
+     * Strokes, colors and font used for drawing, created once since the map
+     * is drawn after each step of a search
+     */
+    private static final BasicStroke THIN_STROKE = new BasicStroke(1);
+    private static final BasicStroke MEDIUM_STROKE = new BasicStroke(2);
+    private static final BasicStroke WIDE_STROKE = new BasicStroke(3);
+    private static final Color VISITED_COLOR = new Color(39, 117, 219);
+    private static final Color END_COLOR = new Color(255, 130, 150);
+    private static final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+    /**
+     * Distance in pixels from a node to the farthest part of it or its label
+     * that is looked for when finding the nodes drawn in an area
+     */
+    private static final int NODE_MARGIN = 100;
+    /**
+     * Lowest scale (pixels per map unit) at which nodes are drawn one by one,
+     * and at which labels are drawn
+     */
+    private static final double DETAIL_SCALE = 4;
+    private static final double LABEL_SCALE = 6;
+    /**
+     * Size of a node in pixels at the default scale, and of the start and
+     * end nodes when zoomed out
+     */
+    private static final int NODE_SIZE = 16;
+    private static final int MARKER_SIZE = 8;
+    /**
+     * Size in pixels of the blocks the nodes are counted in when zoomed out
+     */
+    private static final int BLOCK_SIZE = 4;
+    /**
+     * Gray level of pixels crossed by one link when zoomed out, and how much
+     * darker it gets each time the number of links is doubled
+     */
+    private static final int LINK_SHADE = 0x70;
+    private static final int LINK_SHADE_STEP = 0x18;
+
     private Map map;
+    /**
+     * The part of the map that is shown
+     */
+    private Viewport view = new Viewport();
+    /**
+     * The map without shown links, and the map with the shown links
+     */
+    private BufferedImage background;
+    private BufferedImage canvas;
+    /**
+     * Change counts of the map and the view when the background was drawn
+     */
+    private int drawnChanges;
+    private int drawnViewChanges;
+    /**
+     * Map positions of the nodes by node id, and the links as pairs of node
+     * ids with each pair of links between two nodes in both directions kept
+     * once. Read from the map when the background is drawn zoomed out after
+     * the map has changed.
+     */
+    private int[] mapX;
+    private int[] mapY;
+    private int[] linkFrom;
+    private int[] linkTo;
+    private int noMapLinks;
+    /**
+     * The start and end nodes, the only nodes drawn when zoomed out
+     */
+    private Vector<Node> markedNodes = new Vector<Node>();
+    /**
+     * Change count of the map when the map positions and links were read
+     */
+    private int mapChanges;
+    /**
+     * Pixel positions of the nodes by node id, found when the background is
+     * drawn zoomed out
+     */
+    private int[] nodeX;
+    private int[] nodeY;
+    /**
+     * Number of links crossing each pixel, counted when the background is
+     * drawn zoomed out
+     */
+    private int[] linkCounts;
+    /**
+     * The lists of shown links drawn into the canvas, and the number of links
+     * in them that are drawn
+     */
+    private Vector<Link> drawnVisited;
+    private Vector<Link> drawnPath;
+    private int noVisitedDrawn;
+    private int noPathDrawn;
+    /**
+     * The number of links in the lists of shown links that are repainted
+     * by repaintShownLinks()
+     */
+    private Vector<Link> repaintedVisited;
+    private Vector<Link> repaintedPath;
+    private int noVisitedRepainted;
+    private int noPathRepainted;
 
-    public MapPanel() {
+    public MapPanel(Map map) {
         this.setPreferredSize(new Dimension(550, 410));
-        map = Map.getInstance();
+        this.map = map;
     }
 
-    public void paint(Graphics gn) {
-        Graphics2D g = (Graphics2D) gn;
+    /**
+     * Returns the viewport the map is drawn through. Call repaint() after
+     * changing it.
+     *
+     * @return The viewport
+     */
+    public Viewport getViewport() {
+        return view;
+    }
 
-        g.setColor(Color.white);
-        g.fillRect(0, 0, this.getWidth(), this.getHeight());
+    /**
+     * Shows the map in the default view if it fits in the panel, otherwise
+     * zooms out so the whole map is shown.
+     */
+    public void showMap() {
+        view.reset();
+        int[] bounds = getMapBounds();
+        if (bounds != null && (view.toPanelX(bounds[0]) < 0 || view.toPanelY(bounds[1]) < 0
+                || view.toPanelX(bounds[2]) > getViewWidth() || view.toPanelY(bounds[3]) > getViewHeight())) {
+            fitMap();
+        }
+    }
 
-        Vector<Link> links = map.getLinks();
-        //Draw black links
-        g.setStroke(new BasicStroke(1));
-        g.setColor(Color.black);
-        for (Link l : links) {
-            if (l.visibility == Link.NONE) {
-                g.drawLine(l.getDrawX1(), l.getDrawY1(), l.getDrawX2(), l.getDrawY2());
-            }
+    /**
+     * Zooms and pans so the whole map fills the panel.
+     */
+    public void fitMap() {
+        int[] bounds = getMapBounds();
+        if (bounds == null) {
+            view.reset();
+        } else {
+            view.fit(bounds[0], bounds[1], bounds[2], bounds[3], getViewWidth(), getViewHeight(), NODE_SIZE);
         }
-        //Draw visited and in path links
-        for (Link l : links) {
-            if (l.visibility != Link.NONE) {
-                if (l.visibility == Link.VISITED) {
-                    g.setStroke(new BasicStroke(3));
-                    g.setColor(new Color(39, 117, 219));
-                }
-                if (l.visibility == Link.INPATH) {
-                    g.setStroke(new BasicStroke(3));
-                    g.setColor(Color.red);
+    }
+
+    /**
+     * Returns the lowest and highest coordinates of the nodes in the map as
+     * {x1, y1, x2, y2}, or null if the map has no nodes.
+     */
+    private int[] getMapBounds() {
+        Vector<Node> nodes = map.getNodes();
+        if (nodes.isEmpty()) return null;
+
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            bounds[0] = Math.min(bounds[0], n.x);
+            bounds[1] = Math.min(bounds[1], n.y);
+            bounds[2] = Math.max(bounds[2], n.x);
+            bounds[3] = Math.max(bounds[3], n.y);
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the size of the panel, or the preferred size before the panel
+     * is shown.
+     */
+    private int getViewWidth() {
+        return getWidth() > 0 ? getWidth() : getPreferredSize().width;
+    }
+
+    private int getViewHeight() {
+        return getHeight() > 0 ? getHeight() : getPreferredSize().height;
+    }
+
+    public void paint(Graphics g) {
+        int w = Math.max(1, getWidth());
+        int h = Math.max(1, getHeight());
+        if (background == null || background.getWidth() != w || background.getHeight() != h
+                || drawnChanges != map.getChangeCount() || drawnViewChanges != view.getChangeCount()) {
+            drawBackground(w, h);
+        }
+        drawShownLinks();
+        g.drawImage(canvas, 0, 0, null);
+    }
+
+    /**
+     * Repaints the parts of the panel where links have been shown since the
+     * last call. Called after each step of a search instead of repaint().
+     */
+    public void repaintShownLinks() {
+        Rectangle r = null;
+        Vector<Link> visited = map.getVisitedLinks();
+        if (visited != repaintedVisited) {
+            repaintedVisited = visited;
+            noVisitedRepainted = 0;
+        }
+        for (int size = visited.size(); noVisitedRepainted < size; noVisitedRepainted++) {
+            r = addBounds(r, visited.get(noVisitedRepainted));
+        }
+        Vector<Link> inPath = map.getPathLinks();
+        if (inPath != repaintedPath) {
+            repaintedPath = inPath;
+            noPathRepainted = 0;
+        }
+        for (int size = inPath.size(); noPathRepainted < size; noPathRepainted++) {
+            r = addBounds(r, inPath.get(noPathRepainted));
+        }
+        if (r != null) {
+            repaint(r);
+        }
+    }
+
+    /**
+     * Checks if nodes are drawn one by one at the current scale.
+     */
+    private boolean isDetailed() {
+        return view.getScale() >= DETAIL_SCALE;
+    }
+
+    /**
+     * Draws the map without shown links into the background image, and
+     * starts a new canvas from it.
+     */
+    private void drawBackground(int w, int h) {
+        drawnChanges = map.getChangeCount();
+        drawnViewChanges = view.getChangeCount();
+        if (background == null || background.getWidth() != w || background.getHeight() != h) {
+            background = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            canvas = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+
+        Rectangle all = new Rectangle(0, 0, w, h);
+        if (isDetailed()) {
+            //Find the links that may cross the panel
+            Vector<Link> links = new Vector<Link>();
+            findLinks(all, links);
+
+            Graphics2D g = background.createGraphics();
+            g.setColor(Color.white);
+            g.fillRect(0, 0, w, h);
+
+            //Draw black links
+            g.setStroke(THIN_STROKE);
+            g.setColor(Color.black);
+            for (int i = 0; i < links.size(); i++) {
+                Link l = links.get(i);
+                g.drawLine(getX(l.a), getY(l.a), getX(l.b), getY(l.b));
+            }
+            drawNodes(g, all);
+            g.dispose();
+        } else {
+            //Much of the map is in view, so instead of finding the links in
+            //view, the pixel positions of all nodes are found once and the
+            //links are counted from them straight into an array of pixels,
+            //since there may be millions of links
+            int noNodes = map.getNodeCount();
+            if (mapX == null || mapChanges != map.getChangeCount()) {
+                readMap();
+            }
+            for (int i = 0; i < noNodes; i++) {
+                nodeX[i] = view.toPanelX(mapX[i]);
+                nodeY[i] = view.toPanelY(mapY[i]);
+            }
+
+            if (linkCounts == null || linkCounts.length != w * h) {
+                linkCounts = new int[w * h];
+            } else {
+                Arrays.fill(linkCounts, 0);
+            }
+            for (int i = 0; i < noMapLinks; i++) {
+                int a = linkFrom[i];
+                int b = linkTo[i];
+                countLine(linkCounts, w, h, nodeX[a], nodeY[a], nodeX[b], nodeY[b]);
+            }
+
+            //Pixels with links are shaded darker the more links cross them,
+            //so dense parts of the map can be told apart from sparse ones
+            int[] pixels = ((DataBufferInt) background.getRaster().getDataBuffer()).getData();
+            Arrays.fill(pixels, 0xffffff);
+            drawBlocks(pixels, w, h, noNodes);
+            for (int i = 0; i < pixels.length; i++) {
+                int count = linkCounts[i];
+                if (count > 0) {
+                    int c = Math.max(0, LINK_SHADE - LINK_SHADE_STEP * (31 - Integer.numberOfLeadingZeros(count)));
+                    pixels[i] = (c << 16) | (c << 8) | c;
                 }
-                g.drawLine(l.getDrawX1(), l.getDrawY1(), l.getDrawX2(), l.getDrawY2());
             }
+            Graphics2D g = background.createGraphics();
+            drawNodes(g, all);
+            g.dispose();
         }
 
-        Vector<Node> nodes = map.getNodes();
-        for (Node n : nodes) {
-            g.setStroke(new BasicStroke(1));
+        //Links shown in the old canvas are drawn again
+        drawnVisited = null;
+        drawnPath = null;
+    }
+
+    /**
+     * Reads the map positions of the nodes and the links from the map.
+     */
+    private void readMap() {
+        mapChanges = map.getChangeCount();
+        map.updateAdjacency();
+        int noNodes = map.getNodeCount();
+        mapX = new int[noNodes];
+        mapY = new int[noNodes];
+        nodeX = new int[noNodes];
+        nodeY = new int[noNodes];
+        markedNodes = new Vector<Node>();
+        for (int i = 0; i < noNodes; i++) {
+            Node n = map.getNode(i);
+            mapX[i] = n.x;
+            mapY[i] = n.y;
+            if (n.isStart || n.isEnd) {
+                markedNodes.add(n);
+            }
+        }
+
+        //A link to a node with a lower id is skipped if there is a link back
+        linkFrom = new int[map.getOutOffset(noNodes)];
+        linkTo = new int[linkFrom.length];
+        noMapLinks = 0;
+        for (int i = 0; i < noNodes; i++) {
+            for (int e = map.getOutOffset(i); e < map.getOutOffset(i + 1); e++) {
+                int t = map.getOutTarget(e);
+                if (t < i && hasLink(t, i)) continue;
+                linkFrom[noMapLinks] = i;
+                linkTo[noMapLinks] = t;
+                noMapLinks++;
+            }
+        }
+    }
+
+    /**
+     * Checks if there is a link between two nodes, given by id.
+     */
+    private boolean hasLink(int a, int b) {
+        for (int e = map.getOutOffset(a); e < map.getOutOffset(a + 1); e++) {
+            if (map.getOutTarget(e) == b) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Draws the links shown since the canvas was last drawn, and the nodes
+     * around them on top. The canvas is started again from the background
+     * if the links have been reset.
+     */
+    private void drawShownLinks() {
+        Vector<Link> visited = map.getVisitedLinks();
+        Vector<Link> inPath = map.getPathLinks();
+        if (visited != drawnVisited || inPath != drawnPath) {
+            Graphics2D g = canvas.createGraphics();
+            g.drawImage(background, 0, 0, null);
+            g.dispose();
+            drawnVisited = visited;
+            drawnPath = inPath;
+            noVisitedDrawn = 0;
+            noPathDrawn = 0;
+        }
+        int visitedSize = visited.size();
+        int pathSize = inPath.size();
+        if (noVisitedDrawn == visitedSize && noPathDrawn == pathSize) {
+            return;
+        }
+
+        //Draw visited links, and the links in the path on top of them
+        Graphics2D g = canvas.createGraphics();
+        Rectangle r = null;
+        g.setStroke(isDetailed() ? WIDE_STROKE : MEDIUM_STROKE);
+        g.setColor(VISITED_COLOR);
+        for (; noVisitedDrawn < visitedSize; noVisitedDrawn++) {
+            Link l = visited.get(noVisitedDrawn);
+            if (l.visibility == Link.VISITED) {
+                g.drawLine(getX(l.a), getY(l.a), getX(l.b), getY(l.b));
+                r = addBounds(r, l);
+            }
+        }
+        g.setStroke(WIDE_STROKE);
+        g.setColor(Color.red);
+        for (; noPathDrawn < pathSize; noPathDrawn++) {
+            Link l = inPath.get(noPathDrawn);
+            if (l.visibility == Link.INPATH) {
+                g.drawLine(getX(l.a), getY(l.a), getX(l.b), getY(l.b));
+                r = addBounds(r, l);
+            }
+        }
+
+        //Draw the nodes the links may have been drawn over again, in the
+        //same order as in the background so overlapping nodes look the same
+        if (r != null) {
+            g.setClip(r);
+            drawNodes(g, r);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Draws the nodes, or only the start and end nodes when zoomed out.
+     *
+     * @param g    The graphics to draw with
+     * @param clip Only nodes inside this area are drawn
+     */
+    private void drawNodes(Graphics2D g, Rectangle clip) {
+        Vector<Node> nodes;
+        int size;
+        if (isDetailed()) {
+            nodes = new Vector<Node>();
+            findNodes(clip, nodes);
+            size = (int) Math.round(Math.min(NODE_SIZE, NODE_SIZE * view.getScale() / Viewport.DEFAULT_SCALE));
+        } else {
+            //Read by readMap() when the background was drawn
+            nodes = markedNodes;
+            size = MARKER_SIZE;
+        }
+        boolean labels = view.getScale() >= LABEL_SCALE;
+
+        g.setStroke(THIN_STROKE);
+        g.setFont(LABEL_FONT);
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            if (!intersects(n, clip)) continue;
+            int x = getX(n) - size / 2;
+            int y = getY(n) - size / 2;
+
             g.setColor(Color.lightGray);
             if (n.isStart) g.setColor(Color.green);
-            if (n.isEnd) g.setColor(new Color(255, 130, 150));
-            g.fillOval(n.getDrawX(), n.getDrawY(), 16, 16);
+            if (n.isEnd) g.setColor(END_COLOR);
+            g.fillOval(x, y, size, size);
 
             g.setColor(Color.black);
-            g.drawOval(n.getDrawX(), n.getDrawY(), 16, 16);
+            g.drawOval(x, y, size, size);
+
+            if (labels) {
+                g.drawString(n.label, getX(n) - n.label.length() * 4 + 2, getY(n) + 4);
+            }
+        }
+    }
+
+    /**
+     * Draws the nodes in view as blocks, shaded darker the more nodes there
+     * are in a block.
+     *
+     * @param pixels  The pixels of the background
+     * @param w       Width of the background
+     * @param h       Height of the background
+     * @param noNodes Number of nodes in the pixel positions of the nodes
+     */
+    private void drawBlocks(int[] pixels, int w, int h, int noNodes) {
+        int bw = (w + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int bh = (h + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] counts = new int[bw * bh];
+        for (int i = 0; i < noNodes; i++) {
+            int x = nodeX[i];
+            int y = nodeY[i];
+            if (x >= 0 && x < w && y >= 0 && y < h) {
+                counts[y / BLOCK_SIZE * bw + x / BLOCK_SIZE]++;
+            }
+        }
 
-            g.setFont(new Font("Arial", Font.PLAIN, 10));
-            g.drawString(n.label, n.getDrawLabelX(), n.getDrawLabelY());
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int count = counts[y / BLOCK_SIZE * bw + x / BLOCK_SIZE];
+                if (count > 0) {
+                    int c = Math.max(0xd0, 0xf0 - 0x08 * count);
+                    pixels[y * w + x] = (c << 16) | (c << 8) | c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds one to the count of each pixel a one pixel wide line is drawn
+     * over. The line is clipped to the image first, since its ends may be far
+     * outside.
+     *
+     * @param counts The counts of the pixels of the image
+     * @param w      Width of the image
+     * @param h      Height of the image
+     */
+    private static void countLine(int[] counts, int w, int h, int x1, int y1, int x2, int y2) {
+        if ((x1 < 0 && x2 < 0) || (x1 >= w && x2 >= w) || (y1 < 0 && y2 < 0) || (y1 >= h && y2 >= h)) {
+            return;
+        }
+        if (x1 < 0 || x1 >= w || y1 < 0 || y1 >= h || x2 < 0 || x2 >= w || y2 < 0 || y2 >= h) {
+            //Clip the line to the image (Liang-Barsky)
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            double[] p = {-dx, dx, -dy, dy};
+            double[] q = {x1, w - 1 - x1, y1, h - 1 - y1};
+            double t1 = 0;
+            double t2 = 1;
+            for (int i = 0; i < 4; i++) {
+                if (p[i] == 0) {
+                    if (q[i] < 0) return;
+                } else if (p[i] < 0) {
+                    t1 = Math.max(t1, q[i] / p[i]);
+                } else {
+                    t2 = Math.min(t2, q[i] / p[i]);
+                }
+            }
+            if (t1 > t2) return;
+            int cx1 = (int) Math.round(x1 + t1 * dx);
+            int cy1 = (int) Math.round(y1 + t1 * dy);
+            x2 = (int) Math.round(x1 + t2 * dx);
+            y2 = (int) Math.round(y1 + t2 * dy);
+            x1 = cx1;
+            y1 = cy1;
+        }
+
+        //Bresenham's line algorithm
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            if (x1 >= 0 && x1 < w && y1 >= 0 && y1 < h) {
+                counts[y1 * w + x1]++;
+            }
+            if (x1 == x2 && y1 == y2) break;
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x1 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y1 += sy;
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the pixel x-coordinate of the center of a node.
+     */
+    private int getX(Node n) {
+        return view.toPanelX(n.x);
+    }
+
+    /**
+     * Returns the pixel y-coordinate of the center of a node.
+     */
+    private int getY(Node n) {
+        return view.toPanelY(n.y);
+    }
+
+    /**
+     * Finds the nodes that may be drawn in an area of the panel, in the same
+     * order as in the node list. Labels may be drawn far from their node, so
+     * nodes are looked for in a margin around the area.
+     */
+    private void findNodes(Rectangle r, Vector<Node> result) {
+        map.findNodes((int) Math.floor(view.toMapX(r.x - NODE_MARGIN)),
+                (int) Math.floor(view.toMapY(r.y - NODE_MARGIN)),
+                (int) Math.ceil(view.toMapX(r.x + r.width + NODE_MARGIN)),
+                (int) Math.ceil(view.toMapY(r.y + r.height + NODE_MARGIN)), result);
+    }
+
+    /**
+     * Finds the links that may be drawn in an area of the panel.
+     */
+    private void findLinks(Rectangle r, Vector<Link> result) {
+        map.findLinks((int) Math.floor(view.toMapX(r.x - 1)),
+                (int) Math.floor(view.toMapY(r.y - 1)),
+                (int) Math.ceil(view.toMapX(r.x + r.width + 1)),
+                (int) Math.ceil(view.toMapY(r.y + r.height + 1)), result);
+    }
+
+    /**
+     * Checks if a node and its label may be drawn inside an area.
+     */
+    private boolean intersects(Node n, Rectangle r) {
+        int x = getX(n);
+        int y = getY(n);
+        int labelX = x - n.label.length() * 4 + 2;
+        int x1 = Math.min(x - NODE_SIZE / 2, labelX) - 2;
+        int x2 = Math.max(x + NODE_SIZE / 2 + 1, labelX + n.label.length() * 8) + 2;
+        int y1 = y - NODE_SIZE / 2 - 2;
+        int y2 = y + NODE_SIZE / 2 + 3;
+        return x2 >= r.x && x1 <= r.x + r.width && y2 >= r.y && y1 <= r.y + r.height;
+    }
+
+    /**
+     * Adds the area a link is drawn in with the wide stroke to a rectangle.
+     *
+     * @param r The rectangle, or null for none
+     * @param l The link
+     * @return The rectangle with the area of the link added
+     */
+    private Rectangle addBounds(Rectangle r, Link l) {
+        int x1 = getX(l.a);
+        int y1 = getY(l.a);
+        int x2 = getX(l.b);
+        int y2 = getY(l.b);
+        int x = Math.min(x1, x2) - 3;
+        int y = Math.min(y1, y2) - 3;
+        int w = Math.abs(x1 - x2) + 7;
+        int h = Math.abs(y1 - y2) + 7;
+        if (r == null) return new Rectangle(x, y, w, h);
+        r.add(x, y);
+        r.add(x + w, y + h);
+        return r;
+    }
+}
@@ -0,0 +1,293 @@
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits map file lines into tokens separated by spaces or tabs. Lines are
+ * read in large blocks into a reusable buffer, and tokens are only stored as
+ * positions in the buffer, so reading a line and parsing its numbers does
+ * not create any objects. Strings are only created when asked for with
+ * getString().
+ *
+ * @author Li Xiao
+ */
+public class MapTokenizer {
+    /**
+     * Where lines are read from, null if lines are given with setLine()
+     */
+    private Reader in;
+    /**
+     * Characters read but not yet parsed start at pos and end before limit
+     */
+    private char[] buf = new char[65536];
+    private int pos = 0;
+    private int limit = 0;
+    /**
+     * True when there is nothing more to read
+     */
+    private boolean eof = false;
+    /**
+     * Start and end position in the buffer of each token in the current line
+     */
+    private int[] start = new int[8];
+    private int[] end = new int[8];
+    /**
+     * Number of tokens in the current line
+     */
+    private int noTokens = 0;
+
+    /**
+     * Creates a new tokenizer that reads lines from a reader.
+     *
+     * @param in Where the lines are read from
+     */
+    public MapTokenizer(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates a new tokenizer for lines given with setLine().
+     */
+    public MapTokenizer() {
+        this.in = null;
+        this.eof = true;
+    }
+
+    /**
+     * Reads the next line and splits it into tokens.
+     *
+     * @return True if a line was read, false at the end of the input
+     * @throws IOException if the line can't be read
+     */
+    public boolean nextLine() throws IOException {
+        int lineEnd = pos;
+        while (true) {
+            while (lineEnd < limit && buf[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd < limit || eof) break;
+
+            //The line continues after the buffer, so move it to the start
+            //of the buffer (or a larger one) and read more
+            int length = limit - pos;
+            if (length == buf.length) {
+                char[] b = new char[buf.length * 2];
+                System.arraycopy(buf, pos, b, 0, length);
+                buf = b;
+            } else {
+                System.arraycopy(buf, pos, buf, 0, length);
+            }
+            pos = 0;
+            limit = length;
+            lineEnd = length;
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+
+        if (pos >= limit) {
+            noTokens = 0;
+            return false;
+        }
+        tokenize(pos, lineEnd);
+        pos = lineEnd + 1;
+        return true;
+    }
+
+    /**
+     * Uses a string as the current line and splits it into tokens.
+     *
+     * @param line The line
+     */
+    public void setLine(String line) {
+        if (buf.length < line.length()) {
+            buf = new char[line.length()];
+        }
+        line.getChars(0, line.length(), buf, 0);
+        pos = limit = line.length();
+        tokenize(0, line.length());
+    }
+
+    /**
+     * Splits the characters from, up to but not including, to into tokens.
+     */
+    private void tokenize(int from, int to) {
+        noTokens = 0;
+        int i = from;
+        while (i < to) {
+            while (i < to && isSpace(buf[i])) i++;
+            if (i == to) break;
+            if (noTokens == start.length) {
+                int[] s = new int[noTokens * 2];
+                int[] e = new int[noTokens * 2];
+                System.arraycopy(start, 0, s, 0, noTokens);
+                System.arraycopy(end, 0, e, 0, noTokens);
+                start = s;
+                end = e;
+            }
+            start[noTokens] = i;
+            while (i < to && !isSpace(buf[i])) i++;
+            end[noTokens] = i;
+            noTokens++;
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    /**
+     * Returns the number of tokens in the current line.
+     *
+     * @return Number of tokens
+     */
+    public int getTokenCount() {
+        return noTokens;
+    }
+
+    /**
+     * Returns the characters of the current line. Token i is stored from
+     * getTokenStart(i) and is getTokenLength(i) characters long.
+     *
+     * @return The characters
+     */
+    public char[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * Returns the position in the buffer of the first character of a token.
+     *
+     * @param i Index of the token
+     * @return Position in the buffer
+     */
+    public int getTokenStart(int i) {
+        return start[i];
+    }
+
+    /**
+     * Returns the number of characters in a token.
+     *
+     * @param i Index of the token
+     * @return Number of characters
+     */
+    public int getTokenLength(int i) {
+        return end[i] - start[i];
+    }
+
+    /**
+     * Checks if a token equals a string.
+     *
+     * @param i Index of the token
+     * @param s The string
+     * @return True if the token equals the string, false otherwise
+     */
+    public boolean tokenEquals(int i, String s) {
+        if (end[i] - start[i] != s.length()) return false;
+        for (int k = 0; k < s.length(); k++) {
+            if (buf[start[i] + k] != s.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a token as a string.
+     *
+     * @param i Index of the token
+     * @return The token
+     */
+    public String getString(int i) {
+        return new String(buf, start[i], end[i] - start[i]);
+    }
+
+    /**
+     * Parses a token as an integer.
+     *
+     * @param i Index of the token
+     * @return The integer
+     * @throws NumberFormatException if the token is not an integer
+     */
+    public int getInt(int i) {
+        int k = start[i];
+        boolean neg = false;
+        if (k < end[i] && (buf[k] == '-' || buf[k] == '+')) {
+            neg = buf[k] == '-';
+            k++;
+        }
+        if (k == end[i]) throw new NumberFormatException("For input string: \"" + getString(i) + "\"");
+
+        //Accumulate as a negative number, which has the larger range
+        long v = 0;
+        for (; k < end[i]; k++) {
+            char c = buf[k];
+            if (c < '0' || c > '9') throw new NumberFormatException("For input string: \"" + getString(i) + "\"");
+            v = v * 10 - (c - '0');
+            if (v < Integer.MIN_VALUE) throw new NumberFormatException("For input string: \"" + getString(i) + "\"");
+        }
+        if (!neg) {
+            if (v == Integer.MIN_VALUE) throw new NumberFormatException("For input string: \"" + getString(i) + "\"");
+            v = -v;
+        }
+        return (int) v;
+    }
+
+    /**
+     * Parses a token as a decimal number.
+     *
+     * @param i Index of the token
+     * @return The number
+     * @throws NumberFormatException if the token is not a number
+     */
+    public double getDouble(int i) {
+        //Plain decimal numbers with up to 15 digits are exact as a whole
+        //number divided by a power of ten. Anything else is left to Double.
+        int k = start[i];
+        boolean neg = false;
+        if (k < end[i] && (buf[k] == '-' || buf[k] == '+')) {
+            neg = buf[k] == '-';
+            k++;
+        }
+        long mantissa = 0;
+        int noDigits = 0;
+        int noDecimals = -1;
+        for (; k < end[i]; k++) {
+            char c = buf[k];
+            if (c == '.' && noDecimals < 0) {
+                noDecimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                noDigits++;
+                if (noDecimals >= 0) noDecimals++;
+            } else {
+                break;
+            }
+        }
+        if (k < end[i] || noDigits == 0 || noDigits > 15) {
+            return Double.parseDouble(getString(i));
+        }
+
+        double v = mantissa;
+        if (noDecimals > 0) v /= POWERS_OF_TEN[noDecimals];
+        return neg ? -v : v;
+    }
+
+    /**
+     * Exact powers of ten, used by getDouble
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Closes the reader the lines are read from.
+     *
+     * @throws IOException if the reader can't be closed
+     */
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+}
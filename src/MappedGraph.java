@@ -0,0 +1,543 @@
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A graph read directly from a memory-mapped binary graph file. Opening a
+ * graph file only maps it into memory, so even very large graphs are ready
+ * to search almost at once. The links and coordinates are read from the
+ * mapping when needed, and are never copied onto the heap. Searches estimate
+ * costs from the mapped coordinates, so Node objects are only created for the
+ * nodes on a found path, and are not kept. The label index is created the
+ * first time a node is looked up by label. Loading a graph file into a Map,
+ * as the GUI does, copies the whole graph onto the heap.
+ * <p>
+ * All numbers in a graph file are little endian. The file starts with a
+ * 64 byte header:
+ * <pre>
+ *   int  magic ("STBG")
+ *   int  version (1)
+ *   int  number of nodes (n)
+ *   int  number of links (l)
+ *   int  start node id, -1 if none
+ *   int  end node id, -1 if none
+ *   int  cost function: 0 Euclidean, 1 Manhattan
+ *   int  unused
+ *   long number of label bytes
+ * </pre>
+ * followed by these sections, in order, each starting at a multiple of 8 bytes:
+ * <pre>
+ *   int[n]     x-coordinates
+ *   int[n]     y-coordinates
+ *   int[n + 1] index of the first outgoing link of each node (compressed sparse row)
+ *   int[l]     node id each link leads to
+ *   double[l]  link weights
+ *   byte[l]    1 if the link weight is explicit, 0 if calculated by the cost function
+ *   int[n + 1] index of the first label byte of each node
+ *   byte[]     node labels in UTF-8
+ * </pre>
+ * Each section must be smaller than 2 GB, which allows for up to about 268
+ * million links.
+ *
+ * @author Li Xiao
+ */
+public class MappedGraph extends Graph {
+    /**
+     * "STBG" read as a little endian int
+     */
+    public static final int MAGIC = 0x47425453;
+    /**
+     * Current version of the graph file format
+     */
+    public static final int VERSION = 1;
+    /**
+     * File name extension of graph files
+     */
+    public static final String EXTENSION = ".graph";
+    /**
+     * Size of the file header in bytes
+     */
+    private static final int HEADER_SIZE = 64;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Number of nodes and links
+     */
+    private final int noNodes;
+    private final int noLinks;
+    /**
+     * The sections of the file
+     */
+    private final IntBuffer x;
+    private final IntBuffer y;
+    private final IntBuffer offset;
+    private final IntBuffer target;
+    private final DoubleBuffer weight;
+    private final ByteBuffer explicitWeight;
+    private final IntBuffer labelOffset;
+    private final ByteBuffer labelBytes;
+    /**
+     * Hash table of node ids + 1 by label, 0 for empty slots. Labels are
+     * compared directly with the label bytes in the file, so no strings are
+     * created. Null until the first lookup.
+     */
+    private volatile int[] labelTable;
+
+    /**
+     * Creates a graph from the header values and the mapped sections.
+     */
+    private MappedGraph(int noNodes, int noLinks, int startNode, int endNode, EdgeCostFunction costFunction, ByteBuffer[] sections) {
+        super(costFunction, startNode, endNode);
+        this.noNodes = noNodes;
+        this.noLinks = noLinks;
+        x = sections[0].asIntBuffer();
+        y = sections[1].asIntBuffer();
+        offset = sections[2].asIntBuffer();
+        target = sections[3].asIntBuffer();
+        weight = sections[4].asDoubleBuffer();
+        explicitWeight = sections[5];
+        labelOffset = sections[6].asIntBuffer();
+        labelBytes = sections[7];
+    }
+
+    /**
+     * Opens a graph file.
+     *
+     * @param filename The graph file
+     * @return The graph
+     * @throws IOException if the file can't be read, is not a graph file of a supported version
+     *                     or has an unknown cost function
+     */
+    public static MappedGraph open(String filename) throws IOException {
+        return open(filename, false);
+    }
+
+    /**
+     * Opens a graph file, and optionally checks its link weights. write()
+     * never writes an invalid weight, so the check is only needed for files
+     * that may have been changed since. It reads the whole weight section, so
+     * it is left out where the graph shall be ready to search at once, and
+     * done where all weights are read anyway.
+     *
+     * @param filename The graph file
+     * @param verify   True to check that no link weight is negative, infinite or NaN
+     * @return The graph
+     * @throws IOException if the file can't be read, is not a graph file of a supported version,
+     *                     has an unknown cost function, or verify is true and a link weight
+     *                     is negative, infinite or NaN
+     */
+    public static MappedGraph open(String filename, boolean verify) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel ch = file.getChannel();
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("'" + filename + "' is not a graph file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported graph file version " + header.getInt(4) + " in '" + filename + "'");
+            }
+            int noNodes = header.getInt(8);
+            int noLinks = header.getInt(12);
+            int startNode = header.getInt(16);
+            int endNode = header.getInt(20);
+            EdgeCostFunction costFunction;
+            if (header.getInt(24) == 0) {
+                costFunction = EdgeCostFunction.EUCLIDEAN;
+            } else if (header.getInt(24) == 1) {
+                costFunction = EdgeCostFunction.MANHATTAN;
+            } else {
+                throw new IOException("Unknown cost function " + header.getInt(24) + " in graph file '" + filename + "'");
+            }
+            long[] size = getSectionSizes(noNodes, noLinks, header.getLong(32));
+
+            //The mappings stay valid after the file is closed
+            ByteBuffer[] sections = new ByteBuffer[size.length];
+            long pos = HEADER_SIZE;
+            for (int i = 0; i < size.length; i++) {
+                if (pos + size[i] > ch.size()) {
+                    throw new IOException("Graph file '" + filename + "' is truncated");
+                }
+                sections[i] = ch.map(FileChannel.MapMode.READ_ONLY, pos, size[i]).order(ByteOrder.LITTLE_ENDIAN);
+                pos = align(pos + size[i]);
+            }
+
+            //Searches assume weights are never negative, so the weights are
+            //checked once here instead of each time they are read
+            if (verify) {
+                DoubleBuffer weight = sections[4].asDoubleBuffer();
+                for (int e = 0; e < noLinks; e++) {
+                    if (!Map.isValidWeight(weight.get(e))) {
+                        throw new IOException("Invalid link weight " + weight.get(e) + " in graph file '" + filename + "'");
+                    }
+                }
+            }
+            return new MappedGraph(noNodes, noLinks, startNode, endNode, costFunction, sections);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes a graph to a graph file.
+     *
+     * @param graph          The graph
+     * @param explicitWeight True for each link with an explicit weight, or null if no link has
+     * @param filename       The graph file
+     * @throws IOException if the file can't be written, the graph has a cost function other than
+     *                     Euclidean or Manhattan, or a link weight is negative, infinite or NaN
+     */
+    public static void write(Graph graph, boolean[] explicitWeight, String filename) throws IOException {
+        //Only the built-in cost functions can be read back from the file
+        EdgeCostFunction cf = graph.getCostFunction();
+        if (cf != EdgeCostFunction.EUCLIDEAN && cf != EdgeCostFunction.MANHATTAN) {
+            throw new IOException("Only graphs with the Euclidean or Manhattan cost function can be written to a graph file");
+        }
+        int noNodes = graph.getNodeCount();
+        int noLinks = graph.getLinkCount();
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            file.setLength(0);
+            FileChannel ch = file.getChannel();
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            ch.position(HEADER_SIZE);
+
+            for (int i = 0; i < noNodes; i++) {
+                buf = putInt(ch, buf, graph.getNode(i).x);
+            }
+            buf = pad(ch, buf);
+            for (int i = 0; i < noNodes; i++) {
+                buf = putInt(ch, buf, graph.getNode(i).y);
+            }
+            buf = pad(ch, buf);
+            for (int i = 0; i <= noNodes; i++) {
+                buf = putInt(ch, buf, graph.getOutOffset(i));
+            }
+            buf = pad(ch, buf);
+            for (int e = 0; e < noLinks; e++) {
+                buf = putInt(ch, buf, graph.getOutTarget(e));
+            }
+            buf = pad(ch, buf);
+            for (int e = 0; e < noLinks; e++) {
+                if (buf.remaining() < 8) buf = flush(ch, buf);
+                if (!Map.isValidWeight(graph.getOutWeight(e))) {
+                    throw new IOException("Invalid link weight " + graph.getOutWeight(e) + " can't be written to a graph file");
+                }
+                buf.putDouble(graph.getOutWeight(e));
+            }
+            buf = pad(ch, buf);
+            for (int e = 0; e < noLinks; e++) {
+                if (buf.remaining() < 1) buf = flush(ch, buf);
+                buf.put((byte) (explicitWeight != null && explicitWeight[e] ? 1 : 0));
+            }
+            buf = pad(ch, buf);
+
+            //Label offsets come before the labels, so encode the labels twice
+            //rather than keeping them all in memory
+            long noLabelBytes = 0;
+            for (int i = 0; i < noNodes; i++) {
+                if (noLabelBytes > Integer.MAX_VALUE) {
+                    throw new IOException("Labels too long for a graph file");
+                }
+                buf = putInt(ch, buf, (int) noLabelBytes);
+                noLabelBytes += graph.getNode(i).label.getBytes(UTF8).length;
+            }
+            buf = putInt(ch, buf, (int) noLabelBytes);
+            buf = pad(ch, buf);
+            for (int i = 0; i < noNodes; i++) {
+                byte[] label = graph.getNode(i).label.getBytes(UTF8);
+                for (byte b : label) {
+                    if (buf.remaining() < 1) buf = flush(ch, buf);
+                    buf.put(b);
+                }
+            }
+            flush(ch, buf);
+
+            //The header is written last, when all sizes are known
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(noNodes);
+            header.putInt(noLinks);
+            header.putInt(graph.getStartNode());
+            header.putInt(graph.getEndNode());
+            header.putInt(cf == EdgeCostFunction.EUCLIDEAN ? 0 : 1);
+            header.putInt(0);
+            header.putLong(noLabelBytes);
+            header.rewind();
+            ch.write(header, 0);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Checks if a file is a graph file.
+     *
+     * @param filename The file
+     * @return True if the file starts like a graph file, false otherwise or if
+     * the file can't be read
+     */
+    public static boolean isGraphFile(String filename) {
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(filename));
+            try {
+                return Integer.reverseBytes(in.readInt()) == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the size in bytes of each section of a graph file.
+     */
+    private static long[] getSectionSizes(int noNodes, int noLinks, long noLabelBytes) {
+        return new long[]{
+                4L * noNodes, 4L * noNodes, 4L * (noNodes + 1), 4L * noLinks,
+                8L * noLinks, noLinks, 4L * (noNodes + 1), noLabelBytes
+        };
+    }
+
+    /**
+     * Rounds a file position up to the next multiple of 8.
+     */
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    private static ByteBuffer putInt(FileChannel ch, ByteBuffer buf, int v) throws IOException {
+        if (buf.remaining() < 4) buf = flush(ch, buf);
+        buf.putInt(v);
+        return buf;
+    }
+
+    /**
+     * Writes zeros until the file position is a multiple of 8.
+     */
+    private static ByteBuffer pad(FileChannel ch, ByteBuffer buf) throws IOException {
+        long pos = ch.position() + buf.position();
+        while ((pos & 7) != 0) {
+            if (buf.remaining() < 1) buf = flush(ch, buf);
+            buf.put((byte) 0);
+            pos++;
+        }
+        return buf;
+    }
+
+    /**
+     * Writes the contents of the buffer to the file and empties it.
+     */
+    private static ByteBuffer flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    public int getNodeCount() {
+        return noNodes;
+    }
+
+    public int getLinkCount() {
+        return noLinks;
+    }
+
+    /**
+     * Returns a node. A new Node object is created each time and not kept, so
+     * only ask for nodes that are needed as objects, like those on a path.
+     *
+     * @param id The node id
+     * @return The node
+     */
+    public Node getNode(int id) {
+        Node n = new Node(x.get(id), y.get(id), getLabel(id));
+        n.id = id;
+        n.isStart = id == getStartNode();
+        n.isEnd = id == getEndNode();
+        return n;
+    }
+
+    /**
+     * Estimates the cost of going between two nodes from their coordinates in
+     * the file, without creating Node objects.
+     *
+     * @param a First node id
+     * @param b Second node id
+     * @return The estimated cost
+     */
+    public double getCost(int a, int b) {
+        return getCostFunction().getCost(x.get(a), y.get(a), x.get(b), y.get(b));
+    }
+
+    /**
+     * Reads the label of a node from the file.
+     */
+    private String getLabel(int id) {
+        int from = labelOffset.get(id);
+        byte[] b = new byte[labelOffset.get(id + 1) - from];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = labelBytes.get(from + i);
+        }
+        return new String(b, UTF8);
+    }
+
+    public int findNode(String label) {
+        int[] table = labelTable;
+        if (table == null) {
+            synchronized (this) {
+                table = labelTable;
+                if (table == null) {
+                    table = createLabelTable();
+                    labelTable = table;
+                }
+            }
+        }
+
+        int mask = table.length - 1;
+        for (int i = hash(label) & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (labelEquals(table[i] - 1, label)) {
+                return table[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the label hash table. If several nodes have the same label,
+     * the one with the lowest id is found.
+     */
+    private int[] createLabelTable() {
+        int capacity = 16;
+        while (capacity < 2L * noNodes) {
+            capacity *= 2;
+        }
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < noNodes; id++) {
+            int i = hash(id) & mask;
+            boolean found = false;
+            while (table[i] != 0) {
+                if (labelEquals(table[i] - 1, id)) {
+                    found = true;
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            if (!found) {
+                table[i] = id + 1;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the hash of a label, the same for labels that only differ in
+     * case. Only ASCII characters are used.
+     */
+    private static int hash(String label) {
+        int h = 0;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < 128) h = 31 * h + lower(c);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the hash of the label of a node, the same as hash(String)
+     * gives for the label.
+     */
+    private int hash(int id) {
+        int h = 0;
+        for (int i = labelOffset.get(id); i < labelOffset.get(id + 1); i++) {
+            byte b = labelBytes.get(i);
+            //Bytes of multi-byte UTF-8 characters are negative
+            if (b >= 0) h = 31 * h + lower(b);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Checks if the label of a node equals a label, ignoring case.
+     */
+    private boolean labelEquals(int id, String label) {
+        int from = labelOffset.get(id);
+        int length = labelOffset.get(id + 1) - from;
+        if (length != label.length()) {
+            //Different lengths can still be equal if there are multi-byte characters
+            return !isAscii(label) && getLabel(id).equalsIgnoreCase(label);
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = labelBytes.get(from + i);
+            char c = label.charAt(i);
+            if (b < 0 || c >= 128) return getLabel(id).equalsIgnoreCase(label);
+            if (lower(b) != lower(c)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the labels of two nodes are equal, ignoring case.
+     */
+    private boolean labelEquals(int a, int b) {
+        int fromA = labelOffset.get(a);
+        int fromB = labelOffset.get(b);
+        int length = labelOffset.get(a + 1) - fromA;
+        if (length != labelOffset.get(b + 1) - fromB) {
+            return getLabel(a).equalsIgnoreCase(getLabel(b));
+        }
+        for (int i = 0; i < length; i++) {
+            byte ba = labelBytes.get(fromA + i);
+            byte bb = labelBytes.get(fromB + i);
+            if (ba < 0 || bb < 0) return getLabel(a).equalsIgnoreCase(getLabel(b));
+            if (lower(ba) != lower(bb)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 128) return false;
+        }
+        return true;
+    }
+
+    public int getOutOffset(int id) {
+        return offset.get(id);
+    }
+
+    public int getOutTarget(int e) {
+        return target.get(e);
+    }
+
+    public double getOutWeight(int e) {
+        return weight.get(e);
+    }
+
+    /**
+     * Checks if the weight of a link was given explicitly in the map, rather
+     * than calculated by the cost function.
+     *
+     * @param e Index of the link
+     * @return True if the weight is explicit
+     */
+    public boolean isExplicitWeight(int e) {
+        return explicitWeight.get(e) != 0;
+    }
+}
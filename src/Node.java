@@ -33,6 +33,11 @@ public class Node {
      * Label for this node
      */
     public String label;
+    /**
+     * Index of this node in the map's node list. Assigned by the map when
+     * its adjacency structure is built.
+     */
+    public int id = -1;
 
     /**
      * Creates a new node.
@@ -57,6 +62,7 @@ public class Node {
      */
     public Node clone() {
         Node n = new Node(x, y, label);
+        n.id = id;
         n.isStart = isStart;
         n.isEnd = isEnd;
         return n;
@@ -75,51 +81,4 @@ public class Node {
         }
         return false;
     }
-
-    /***********
-     *
-     * The methods below are only used by the GUI.
-     * Leave them as they are now.
-     *
-     ***********/
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawX() {
-        int c = x * 10;
-        return c - 8;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawY() {
-        int c = y * 10;
-        return c - 6;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawLabelX() {
-        int c = x * 10;
-        return c - label.length() * 4 + 2;
-    }
-
-    /**
-     * Used by the GUI only.
-     *
-     * @return draw coordinate
-     */
-    public int getDrawLabelY() {
-        int c = y * 10;
-        return c + 6;
-    }
 }
@@ -0,0 +1,243 @@
+/**
+ * Indexed binary min-heap of node ids, used as open list by the search methods
+ * that always expand the node with the lowest cost. A node can be in the heap
+ * at most once, which gives O(log n) add, poll and decrease-key operations and
+ * O(1) lookup of whether a node is in the heap.
+ * <p>
+ * Nodes with equal priority are returned in the order they were added (FIFO),
+ * or in reverse order (LIFO). This gives the same expansion order as scanning
+ * an open list for the first node with the lowest cost, when nodes are added
+ * last (FIFO) or first (LIFO) in the list.
+ *
+ * @author Li Xiao
+ */
+public class NodeHeap {
+    /**
+     * The node ids in heap order
+     */
+    private int[] heap = new int[0];
+    /**
+     * Priority of the node at each heap position
+     */
+    private double[] priority = new double[0];
+    /**
+     * Insertion order of the node at each heap position, used to break ties
+     */
+    private long[] order = new long[0];
+    /**
+     * Heap position of each node, indexed by node id. -1 if not in the heap.
+     */
+    private int[] pos = new int[0];
+    /**
+     * Number of nodes in the heap
+     */
+    private int size = 0;
+    /**
+     * Counter used to number added nodes
+     */
+    private long counter = 0;
+    /**
+     * True if ties are broken in reverse insertion order
+     */
+    private boolean lifo = false;
+
+    /**
+     * Empties the heap.
+     *
+     * @param noNodes Number of nodes in the map (node ids are below this number)
+     * @param lifo    True if nodes with equal priority shall be returned last added first,
+     *                false if they shall be returned first added first
+     */
+    public void reset(int noNodes, boolean lifo) {
+        this.lifo = lifo;
+        if (pos.length < noNodes) {
+            heap = new int[noNodes];
+            priority = new double[noNodes];
+            order = new long[noNodes];
+            pos = new int[noNodes];
+            for (int i = 0; i < noNodes; i++) {
+                pos[i] = -1;
+            }
+        } else {
+            //Only the nodes left in the heap have a position set
+            for (int i = 0; i < size; i++) {
+                pos[heap[i]] = -1;
+            }
+        }
+        size = 0;
+        counter = 0;
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return True if the heap is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of nodes in the heap.
+     *
+     * @return Number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a node to the heap. The node must not already be in the heap.
+     *
+     * @param n The node id
+     * @param p Priority of the node (lowest is returned first)
+     */
+    public void add(int n, double p) {
+        int i = size++;
+        heap[i] = n;
+        priority[i] = p;
+        order[i] = counter++;
+        pos[n] = i;
+        siftUp(i);
+    }
+
+    /**
+     * Removes and returns the node with the lowest priority.
+     *
+     * @return The node id, or -1 if the heap is empty
+     */
+    public int poll() {
+        if (size == 0) return -1;
+
+        int n = heap[0];
+        pos[n] = -1;
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the node with the lowest priority without removing it.
+     *
+     * @return The node id, or -1 if the heap is empty
+     */
+    public int peek() {
+        if (size == 0) return -1;
+        return heap[0];
+    }
+
+    /**
+     * Returns the lowest priority in the heap.
+     *
+     * @return The lowest priority, or positive infinity if the heap is empty
+     */
+    public double peekPriority() {
+        if (size == 0) return Double.POSITIVE_INFINITY;
+        return priority[0];
+    }
+
+    /**
+     * Checks if a node is in the heap.
+     *
+     * @param n The node id
+     * @return True if the node is in the heap, false otherwise
+     */
+    public boolean contains(int n) {
+        return pos[n] >= 0;
+    }
+
+    /**
+     * Returns the priority of a node in the heap.
+     *
+     * @param n The node id
+     * @return The priority of the node
+     */
+    public double getPriority(int n) {
+        return priority[pos[n]];
+    }
+
+    /**
+     * Lowers the priority of a node in the heap. The node counts as added
+     * last when breaking ties.
+     *
+     * @param n The node id
+     * @param p New priority, must not be higher than the current priority
+     */
+    public void decreaseKey(int n, double p) {
+        int i = pos[n];
+        priority[i] = p;
+        order[i] = counter++;
+        siftUp(i);
+    }
+
+    /**
+     * Checks if the node at heap position i shall be returned before the
+     * node at position j.
+     */
+    private boolean before(int i, int j) {
+        if (priority[i] < priority[j]) return true;
+        if (priority[i] > priority[j]) return false;
+        if (lifo) return order[i] > order[j];
+        return order[i] < order[j];
+    }
+
+    /**
+     * Moves a node up until its parent is before it.
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves a node down until it is before both its children.
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int best = left;
+            int right = left + 1;
+            if (right < size && before(right, left)) best = right;
+            if (!before(best, i)) break;
+            swap(i, best);
+            i = best;
+        }
+    }
+
+    /**
+     * Swaps the nodes at two heap positions.
+     */
+    private void swap(int i, int j) {
+        int n = heap[i];
+        double p = priority[i];
+        long o = order[i];
+
+        heap[i] = heap[j];
+        priority[i] = priority[j];
+        order[i] = order[j];
+        pos[heap[i]] = i;
+
+        heap[j] = n;
+        priority[j] = p;
+        order[j] = o;
+        pos[n] = j;
+    }
+
+    /**
+     * Moves the node at heap position from to position to.
+     */
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        priority[to] = priority[from];
+        order[to] = order[from];
+        pos[heap[to]] = to;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Open list of node ids for the search methods that expand nodes in the order
+ * they were added (FIFO) or in reverse order (LIFO). Each node can be added
+ * at most once per search, so the queue never holds more ids than there are
+ * nodes in the map and is backed by a single preallocated array.
+ *
+ * @author Li Xiao
+ */
+public class NodeQueue {
+    /**
+     * The node ids
+     */
+    private int[] ids = new int[0];
+    /**
+     * Position of the first node
+     */
+    private int head = 0;
+    /**
+     * Position after the last node
+     */
+    private int tail = 0;
+
+    /**
+     * Empties the queue.
+     *
+     * @param noNodes Number of nodes in the map
+     */
+    public void reset(int noNodes) {
+        if (ids.length < noNodes) {
+            ids = new int[noNodes];
+        }
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return True if the queue is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Returns the number of nodes in the queue.
+     *
+     * @return Number of nodes
+     */
+    public int size() {
+        return tail - head;
+    }
+
+    /**
+     * Adds a node last in the queue.
+     *
+     * @param n The node id
+     */
+    public void add(int n) {
+        ids[tail++] = n;
+    }
+
+    /**
+     * Removes and returns the first node in the queue (FIFO).
+     *
+     * @return The node id
+     */
+    public int pollFirst() {
+        return ids[head++];
+    }
+
+    /**
+     * Removes and returns the last node in the queue (LIFO).
+     *
+     * @return The node id
+     */
+    public int pollLast() {
+        return ids[--tail];
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * This is the implementation of a one-to-many Uniform-cost search, which finds
+ * the paths from the start node to several target nodes in one search.
+ * <p>
+ * Nodes are visited in order of actual cost like in UniformCostSearch, and
+ * each node is visited once. The search continues until all targets are
+ * visited, the open list is empty or the next node costs more than the cost
+ * bound. The path to each visited target is then the shortest path.
+ * <p>
+ * When initialized with init(graph, start, end) the end node is the only
+ * target, and getPath() returns the path to it.
+ *
+ * @author Li Xiao
+ */
+public class OneToManySearch extends SearchMethod {
+    /**
+     * Open list as a priority queue ordered by actual cost
+     */
+    private NodeHeap queue;
+    /**
+     * The target node ids
+     */
+    private int[] targets;
+    /**
+     * Highest actual cost of a visited node
+     */
+    private double maxCost;
+    /**
+     * Marks the targets of the current search with the number of the search
+     */
+    private int[] targetMark = new int[0];
+    private int searchNo = 0;
+    /**
+     * Number of targets not yet visited
+     */
+    private int noLeft;
+    /**
+     * The paths to the targets, created when the search is ready
+     */
+    private Path[] paths;
+
+    /**
+     * Creates a new one-to-many search. Call init() to start a search.
+     */
+    public OneToManySearch() {
+    }
+
+    /**
+     * Initializes a new search with the end node as the only target.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        init(graph, start, new int[]{end}, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph   The graph to find the paths in
+     * @param start   Start node id
+     * @param targets Target node ids
+     * @param maxCost Highest actual cost of a path to a target, positive
+     *                infinity for no bound
+     */
+    public void init(Graph graph, int start, int[] targets, double maxCost) {
+        super.init(graph, start, targets.length > 0 ? targets[0] : -1);
+        this.targets = targets;
+        this.maxCost = maxCost;
+        paths = null;
+
+        //Mark the targets, counting each node once
+        if (targetMark.length < graph.getNodeCount()) {
+            targetMark = new int[graph.getNodeCount()];
+            searchNo = 0;
+        }
+        searchNo++;
+        noLeft = 0;
+        for (int i = 0; i < targets.length; i++) {
+            if (targetMark[targets[i]] != searchNo) {
+                targetMark[targets[i]] = searchNo;
+                noLeft++;
+            }
+        }
+
+        //Add start node to open list
+        queue = space.getHeap(false);
+        space.open(start, -1, -1, 0);
+        queue.add(start, 0);
+    }
+
+    /**
+     * Finds the paths from the start node to the targets.
+     *
+     * @return True when the search is ready, false if not ready.
+     */
+    public boolean step() {
+        //The search is ready when all targets are visited, or no target
+        //left can be reached within the cost bound
+        if (noLeft == 0 || queue.isEmpty() || queue.peekPriority() > maxCost) {
+            ready();
+            return true;
+        }
+
+        //Find the next node to visit = the node with the shortest path so far
+        int n = queue.poll();
+        setLinkAsVisited(n);
+        //Move the visited node to the closed list
+        space.close(n);
+        //Increase the visited counter
+        noVisited++;
+
+        if (targetMark[n] == searchNo) {
+            noLeft--;
+        }
+
+        //Find the nodes that are connected to the current node n
+        for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+            int c = graph.getOutTarget(e);
+            double actual = space.getActual(n) + graph.getOutWeight(e);
+
+            byte state = space.getState(c);
+            if (state == SearchSpace.UNSEEN) {
+                space.open(c, n, e, actual);
+                queue.add(c, actual);
+            } else if (state == SearchSpace.OPEN && actual < space.getActual(c)) {
+                //Found a cheaper path to a node in the open list
+                space.open(c, n, e, actual);
+                queue.decreaseKey(c, actual);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates the paths to the visited targets.
+     */
+    private void ready() {
+        paths = new Path[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            if (space.getState(targets[i]) == SearchSpace.CLOSED) {
+                paths[i] = reconstructPath(targets[i]);
+            } else {
+                paths[i] = new Path(graph);
+            }
+        }
+        if (paths.length > 0) {
+            path = paths[0];
+        }
+    }
+
+    /**
+     * Returns the number of targets.
+     *
+     * @return Number of targets
+     */
+    public int getTargetCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the path to a target. Only valid when the search is ready.
+     *
+     * @param i Index of the target in the targets given to init()
+     * @return The path, which is empty if the target can't be reached within
+     * the cost bound
+     */
+    public Path getPath(int i) {
+        return paths[i];
+    }
+
+    /**
+     * Returns the actual cost of the path to a target. Only valid when the
+     * search is ready.
+     *
+     * @param i Index of the target in the targets given to init()
+     * @return The cost, or positive infinity if the target can't be reached
+     * within the cost bound
+     */
+    public double getCost(int i) {
+        if (space.getState(targets[i]) != SearchSpace.CLOSED) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return space.getActual(targets[i]);
+    }
+}
@@ -16,13 +16,20 @@ public class Path {
      * The total length of the path
      */
     private double length = 0;
+    /**
+     * The graph the path is found in
+     */
+    private Graph graph;
 
     /**
      * Constructor.
+     *
+     * @param graph The graph the path is found in, used to get the link lengths
      */
-    public Path() {
+    public Path(Graph graph) {
         path = new Vector<Node>();
         length = 0;
+        this.graph = graph;
     }
 
     /**
@@ -65,18 +72,15 @@ public class Path {
     }
 
     /**
-     * Calculates the length (Euclidean distance) between two nodes using
-     * Pythagoras theorem.
+     * Returns the length between two nodes, which is the weight of the link
+     * connecting them.
      *
      * @param a The first node
      * @param b The second node
      * @return The distance between the nodes
      */
     private double getLength(Node a, Node b) {
-        double sqX = Math.pow(b.x - a.x, 2);
-        double sqY = Math.pow(b.y - a.y, 2);
-        double euclidean = Math.sqrt(sqX + sqY);
-        return euclidean;
+        return graph.getLinkWeight(a.id, b.id);
     }
 
     /**
@@ -94,21 +98,26 @@ public class Path {
      * @return Number of segments (links)
      */
     public int getPieces() {
+        if (path.isEmpty()) return 0;
         return path.size() - 1;
     }
 
     /**
      * Show the links in the path. This method is used by the GUI to visualize
      * the found path.
+     *
+     * @param map The map the path was found in
      */
-    public void showPathLinks() {
+    public void showPathLinks(Map map) {
         for (int i = 0; i < path.size() - 1; i++) {
             Node a = path.get(i);
             Node b = path.get(i + 1);
 
-            for (Link l : Map.getInstance().getLinks()) {
-                if (l.a.equals(a) && l.b.equals(b)) {
-                    l.visibility = Link.INPATH;
+            int no = map.getOutDegree(a);
+            for (int j = 0; j < no; j++) {
+                Link l = map.getOutLink(a, j);
+                if (l.b.equals(b)) {
+                    map.setVisibility(l, Link.INPATH);
                 }
             }
         }
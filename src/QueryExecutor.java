@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Runs many path queries in parallel on one graph, without the GUI. Queries are
+ * spread over a pool of worker threads, and each result is returned as a
+ * CompletableFuture.
+ * <p>
+ * Each worker thread keeps its own search methods and search space and reuses
+ * them for every query it runs, so queries don't allocate open/closed lists or
+ * per-node arrays. The graph is immutable and shared by all workers without
+ * locking, and so is the contraction hierarchy used by the
+ * ContractionHierarchy search method, which is set with setHierarchy().
+ *
+ * @author Li Xiao
+ */
+public class QueryExecutor implements AutoCloseable {
+    /**
+     * Search methods and search space reused by the queries run on one worker thread.
+     */
+    private static class Worker {
+        /**
+         * Search space shared by the search methods of this worker
+         */
+        private SearchSpace space = new SearchSpace();
+        /**
+         * Search methods by lower case name
+         */
+        private HashMap<String, SearchMethod> methods = new HashMap<String, SearchMethod>();
+
+        /**
+         * Returns the search method with the specified name, creating it the
+         * first time it is used on this worker.
+         *
+         * @param name Name of the search method
+         * @return The search method
+         */
+        private SearchMethod getMethod(String name) {
+            String key = name.toLowerCase();
+            SearchMethod method = methods.get(key);
+            if (method == null) {
+                method = SearchMethod.create(name);
+                if (method == null) {
+                    throw new IllegalArgumentException("Unknown search method '" + name + "'");
+                }
+                method.setSearchSpace(space);
+                methods.put(key, method);
+            }
+            return method;
+        }
+    }
+
+    /**
+     * The graph to search in
+     */
+    private final Graph graph;
+    /**
+     * Contraction hierarchy of the graph, null if none is set
+     */
+    private volatile ContractionHierarchy hierarchy;
+    /**
+     * The worker threads
+     */
+    private final ExecutorService pool;
+    /**
+     * Search methods and search space of each worker thread
+     */
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * Creates a new executor with one worker thread per available processor.
+     *
+     * @param graph The graph to search in
+     */
+    public QueryExecutor(Graph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new executor.
+     *
+     * @param graph   The graph to search in
+     * @param threads Number of worker threads
+     */
+    public QueryExecutor(Graph graph, int threads) {
+        this.graph = graph;
+        this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int no = 0;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "QueryExecutor-" + (no++));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Returns the graph the queries are run on.
+     *
+     * @return The graph
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Sets the contraction hierarchy of the graph, used by queries with the
+     * ContractionHierarchy search method submitted after this call.
+     *
+     * @param hierarchy The hierarchy
+     */
+    public void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Submits a query.
+     *
+     * @param start      Start node id
+     * @param end        End node id
+     * @param methodName Name of the search method (see SearchMethod.create)
+     * @return The result, completed when the search is ready. Completed
+     * exceptionally with an IllegalArgumentException if the search method is unknown,
+     * or is ContractionHierarchy and no hierarchy is set.
+     */
+    public CompletableFuture<SearchResult> submit(final int start, final int end, final String methodName) {
+        final ContractionHierarchy ch = hierarchy;
+        return CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
+            public SearchResult get() {
+                SearchMethod method = workers.get().getMethod(methodName);
+                if (method instanceof ContractionHierarchies) {
+                    ((ContractionHierarchies) method).setHierarchy(ch);
+                }
+                method.init(graph, start, end);
+                return SearchResult.run(method);
+            }
+        }, pool);
+    }
+
+    /**
+     * Submits a batch of queries using the same search method.
+     *
+     * @param starts     Start node ids
+     * @param ends       End node ids, same number as start node ids
+     * @param methodName Name of the search method (see SearchMethod.create)
+     * @return The results, in the same order as the queries
+     */
+    public List<CompletableFuture<SearchResult>> submitAll(int[] starts, int[] ends, String methodName) {
+        if (starts.length != ends.length) {
+            throw new IllegalArgumentException("Expected the same number of start and end nodes");
+        }
+
+        List<CompletableFuture<SearchResult>> results = new ArrayList<CompletableFuture<SearchResult>>(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            results.add(submit(starts[i], ends[i], methodName));
+        }
+        return results;
+    }
+
+    /**
+     * Returns a future that is completed when all the specified results are.
+     *
+     * @param results The results to wait for
+     * @return Completed when all results are completed
+     */
+    public static CompletableFuture<Void> allOf(List<CompletableFuture<SearchResult>> results) {
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Stops the worker threads. Queries already submitted are still run.
+     */
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Receives progress from a running search, for example to show it in the GUI.
+ * Searches don't change the map, so the listener is the only way to follow
+ * which links a search has visited.
+ *
+ * @author Li Xiao
+ */
+public interface SearchListener {
+    /**
+     * Called when a search visits (expands) a node, with the link from the
+     * parent of the node to the node.
+     *
+     * @param link Index of the link in the graph (see Graph.getOutOffset)
+     */
+    void linkVisited(int link);
+}
@@ -1,155 +1,148 @@
-import java.util.Vector;
-
 /**
  * Abstract base class for all search algorithms. Each search algorithm must
- * extend this class and implement the findPath() method.
+ * extend this class and implement the step() method.
+ * <p>
+ * Searches run on an immutable graph (a snapshot of the map) and never change
+ * it. Nodes are identified by their id in the graph. The actual cost, parent and
+ * open/closed state of each node are kept in a search space, which is reused
+ * when the search is initialized again, so searches don't create any node copies.
+ * Several searches can run at the same time on the same graph as long as they
+ * use different search spaces.
  *
  * @author Johan Hagelbäck
  */
 public abstract class SearchMethod {
     /**
-     * Open list data structure
-     */
-    protected Vector<Node> open;
-    /**
-     * Closed list data structure
+     * Size of the transposition table used by IDA-star searches created by name
      */
-    protected Vector<Node> closed;
+    public static final int IDA_TABLE_SIZE = 4096;
     /**
-     * The map to find the path in
+     * The graph to find the path in
      */
-    protected Map map;
+    protected Graph graph;
     /**
-     * End (destination) node
+     * End (destination) node id
      */
-    protected Node end;
+    protected int end;
     /**
-     * Start node
+     * Start node id
      */
-    protected Node start;
+    protected int start;
     /**
      * The found path
      */
     protected Path path;
+    /**
+     * Actual cost, parent and open/closed state for each node
+     */
+    protected SearchSpace space;
+    /**
+     * Notified about visited links, null if none
+     */
+    protected SearchListener listener;
     /**
      * Counter for number of visited (expanded) nodes
      */
     public int noVisited = 0;
 
     /**
-     * Initializes a new search. Must be called for a new search is conducted since it
-     * resets all necessary variables and data structures.
+     * Initializes a new search between the start and end nodes of the graph.
+     *
+     * @param graph The graph to find the path in
      */
-    public void init() {
-        open = new Vector<Node>();
-        closed = new Vector<Node>();
-        noVisited = 0;
-        map = Map.getInstance();
-        map.reset();
-        end = map.getEndNode();
-        start = map.getStartNode();
-        //Add start node to open list
-        open.add(start.clone());
-        path = new Path();
+    public void init(Graph graph) {
+        init(graph, graph.getStartNode(), graph.getEndNode());
     }
 
     /**
-     * Checks if a node is in the open list.
+     * Initializes a new search. Must be called for a new search is conducted since it
+     * resets all necessary variables and data structures. Subclasses add the start
+     * node to their open list after calling this method.
      *
-     * @param n The node to check
-     * @return True if the node is in the open list, false otherwise
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
      */
-    protected boolean isInOpen(Node n) {
-        for (Node c : open) {
-            if (c.equals(n)) return true;
+    public void init(Graph graph, int start, int end) {
+        noVisited = 0;
+        this.graph = graph;
+        if (space == null) {
+            space = new SearchSpace();
         }
-        return false;
+        space.reset(graph.getNodeCount());
+        this.end = end;
+        this.start = start;
+        path = new Path(graph);
     }
 
     /**
-     * Checks if a node is in the open list. If it is, the copy of the node in
-     * the open list is returned.
+     * Sets the search space to use. Searches that are run one after another
+     * can share a search space to avoid allocating new arrays for each search.
+     * Must be called before init().
      *
-     * @param n The node to check
-     * @return The copy of the node (if found in open list), null otherwise
+     * @param space The search space
      */
-    protected Node findInOpen(Node n) {
-        for (Node c : open) {
-            if (c.equals(n)) return c;
-        }
-        return null;
+    public void setSearchSpace(SearchSpace space) {
+        this.space = space;
     }
 
     /**
-     * Checks if a node is in the closed list.
+     * Sets the listener to notify about visited links.
      *
-     * @param n The node to check
-     * @return True if the node is in the closed list, false otherwise
+     * @param listener The listener, or null for none
      */
-    protected boolean isInClosed(Node n) {
-        for (Node c : closed) {
-            if (c.equals(n)) return true;
-        }
-        return false;
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
     }
 
     /**
-     * Checks if a node is in the closed list. If it is, the copy of the node in
-     * the closed list is returned.
+     * Shows the link from the parent of a node to the node as visited in the GUI.
      *
-     * @param n The node to check
-     * @return The copy of the node (if found in closed list), null otherwise
+     * @param n The node id
      */
-    protected Node findInClosed(Node n) {
-        for (Node c : closed) {
-            if (c.equals(n)) return c;
-        }
-        return null;
+    protected void setLinkAsVisited(int n) {
+        setLinkAsVisited(space, n);
     }
 
     /**
-     * Checks if a node is in the open or closed lists.
+     * Shows the link from the parent of a node to the node as visited in the GUI.
      *
-     * @param n The node to check
-     * @return True if the node is in the open or closed lists, false otherwise
+     * @param s The search space holding the parent reference
+     * @param n The node id
      */
-    protected boolean isInOpenOrClosed(Node n) {
-        if (isInOpen(n) || isInClosed(n)) {
-            return true;
+    protected void setLinkAsVisited(SearchSpace s, int n) {
+        int e = s.getParentLink(n);
+        if (e >= 0 && listener != null) {
+            listener.linkVisited(e);
         }
-        return false;
     }
 
     /**
-     * Returns a list with copies of all nodes connected to the specified node.
+     * Reconstructs a path by traversing from the end node back to the start node
+     * using the parent references. Use when you want to create the actual path
+     * from your search.
      *
-     * @param n The node to find connected nodes to
-     * @return The list of connected nodes
-     */
-    protected Vector<Node> getConnectedNodes(Node n) {
-        Vector<Node> nodes = new Vector<Node>();
-        for (Link l : map.getLinks()) {
-            if (l.a.equals(n)) {
-                nodes.add(l.b.clone());
-            }
-        }
-        return nodes;
+     * @param n The end node id
+     * @return The path (a list of nodes)
+     */
+    protected Path reconstructPath(int n) {
+        return reconstructPath(space, n);
     }
 
     /**
      * Reconstructs a path by traversing from the end node back to the start node
-     * using the parent references. Use when you want to create the actual path
-     * from your search.
+     * using the parent references in the specified search space.
      *
-     * @param n The end node
+     * @param s The search space holding the parent references
+     * @param n The end node id
      * @return The path (a list of nodes)
      */
-    protected Path reconstructPath(Node n) {
-        Path path = new Path();
-        path.add(n);
-        while (n.parent != null) {
-            n = n.parent;
-            path.add(n);
+    protected Path reconstructPath(SearchSpace s, int n) {
+        Path path = new Path(graph);
+        path.add(graph.getNode(n));
+        while (s.getParent(n) >= 0) {
+            n = s.getParent(n);
+            path.add(graph.getNode(n));
         }
         return path;
     }
@@ -164,9 +157,53 @@ public abstract class SearchMethod {
     }
 
     /**
-     * Finds a path from start to end node.
+     * Finds a path from start to end node. If the search is ready without
+     * finding a path (the end node can't be reached), getPath() returns an
+     * empty path.
      *
      * @return True when the search is ready, false if not ready.
      */
     public abstract boolean step();
+
+    /**
+     * Creates a new search method from its name. The name is either the class
+     * name or the command used by the GUI buttons, and is not case sensitive.
+     * Call init() to start a search.
+     *
+     * @param name Name of the search method
+     * @return The search method, or null if the name is unknown
+     */
+    public static SearchMethod create(String name) {
+        if (name.equalsIgnoreCase("DepthFirst") || name.equalsIgnoreCase("DepthFirstSearch")) {
+            return new DepthFirst();
+        }
+        if (name.equalsIgnoreCase("BreadthFirst") || name.equalsIgnoreCase("BreadthFirstSearch")) {
+            return new BreadthFirst();
+        }
+        if (name.equalsIgnoreCase("UniformCost") || name.equalsIgnoreCase("UniformCostSearch")) {
+            return new UniformCostSearch();
+        }
+        if (name.equalsIgnoreCase("OneToMany") || name.equalsIgnoreCase("OneToManySearch")) {
+            return new OneToManySearch();
+        }
+        if (name.equalsIgnoreCase("Bidirectional")) {
+            return new Bidirectional();
+        }
+        if (name.equalsIgnoreCase("BidirectionalAstar")) {
+            return new Bidirectional(true);
+        }
+        if (name.equalsIgnoreCase("GreedySearch")) {
+            return new GreedySearch();
+        }
+        if (name.equalsIgnoreCase("Astar")) {
+            return new Astar();
+        }
+        if (name.equalsIgnoreCase("ContractionHierarchy") || name.equalsIgnoreCase("ContractionHierarchies")) {
+            return new ContractionHierarchies();
+        }
+        if (name.equalsIgnoreCase("IDAstar")) {
+            return new IDAstar(IDA_TABLE_SIZE);
+        }
+        return null;
+    }
 }
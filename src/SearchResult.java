@@ -0,0 +1,38 @@
+/**
+ * The result of a search run to completion.
+ *
+ * @author Li Xiao
+ */
+public class SearchResult {
+    /**
+     * The found path, empty if no path was found
+     */
+    public Path path;
+    /**
+     * Number of visited (expanded) nodes
+     */
+    public int noVisited;
+    /**
+     * Time the search took, in nanoseconds
+     */
+    public long time;
+
+    /**
+     * Runs an initialized search to completion and collects the result.
+     *
+     * @param method The search, initialized with init()
+     * @return The result of the search
+     */
+    public static SearchResult run(SearchMethod method) {
+        long t = System.nanoTime();
+        while (!method.step()) {
+            //Run the search to completion
+        }
+
+        SearchResult r = new SearchResult();
+        r.time = System.nanoTime() - t;
+        r.path = method.getPath();
+        r.noVisited = method.noVisited;
+        return r;
+    }
+}
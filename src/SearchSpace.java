@@ -0,0 +1,197 @@
+/**
+ * Holds the per-node state of a search: the actual cost from the start node,
+ * the parent reference and whether the node is in the open or closed list.
+ * Nodes are identified by their id in the map, and the state is kept in
+ * preallocated arrays indexed by node id instead of in node copies.
+ * <p>
+ * A search space is reused between searches. Resetting it does not clear
+ * the arrays. Instead each search gets a new generation number and entries
+ * stamped with an older generation are treated as unvisited, so a reset
+ * costs O(1) and searches run one after another allocate nothing.
+ *
+ * @author Li Xiao
+ */
+public class SearchSpace {
+    /**
+     * Node is not visited in the current search
+     */
+    public static final byte UNSEEN = 0;
+    /**
+     * Node is in the open list
+     */
+    public static final byte OPEN = 1;
+    /**
+     * Node is in the closed list
+     */
+    public static final byte CLOSED = 2;
+
+    /**
+     * Actual cost from the start node to each node
+     */
+    private double[] actual = new double[0];
+    /**
+     * Parent node id of each node, -1 for none
+     */
+    private int[] parent = new int[0];
+    /**
+     * Index of the link from the parent to each node, -1 for none
+     */
+    private int[] parentLink = new int[0];
+    /**
+     * UNSEEN, OPEN or CLOSED for each node
+     */
+    private byte[] state = new byte[0];
+    /**
+     * The search generation each node entry belongs to
+     */
+    private int[] stamp = new int[0];
+    /**
+     * The current search generation
+     */
+    private int generation = 0;
+    /**
+     * Reusable priority queue open list
+     */
+    private NodeHeap heap = new NodeHeap();
+    /**
+     * Reusable FIFO/LIFO open list
+     */
+    private NodeQueue queue = new NodeQueue();
+
+    /**
+     * Prepares the search space for a new search.
+     *
+     * @param noNodes Number of nodes in the map
+     */
+    public void reset(int noNodes) {
+        if (actual.length < noNodes) {
+            actual = new double[noNodes];
+            parent = new int[noNodes];
+            parentLink = new int[noNodes];
+            state = new byte[noNodes];
+            stamp = new int[noNodes];
+            generation = 0;
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            //Start over when the generation counter wraps
+            for (int i = 0; i < stamp.length; i++) {
+                stamp[i] = 0;
+            }
+            generation = 1;
+        }
+    }
+
+    /**
+     * Returns the number of nodes this search space has room for.
+     *
+     * @return Number of nodes
+     */
+    public int getCapacity() {
+        return actual.length;
+    }
+
+    /**
+     * Returns the state of a node in the current search.
+     *
+     * @param n The node id
+     * @return UNSEEN, OPEN or CLOSED
+     */
+    public byte getState(int n) {
+        if (stamp[n] != generation) return UNSEEN;
+        return state[n];
+    }
+
+    /**
+     * Checks if a node is neither in the open nor the closed list.
+     *
+     * @param n The node id
+     * @return True if the node is not visited, false otherwise
+     */
+    public boolean isUnseen(int n) {
+        return getState(n) == UNSEEN;
+    }
+
+    /**
+     * Returns the actual cost from the start node to a node.
+     *
+     * @param n The node id
+     * @return The actual cost
+     */
+    public double getActual(int n) {
+        if (stamp[n] != generation) return 0;
+        return actual[n];
+    }
+
+    /**
+     * Returns the parent of a node.
+     *
+     * @param n The node id
+     * @return The parent node id, or -1 if the node has no parent
+     */
+    public int getParent(int n) {
+        if (stamp[n] != generation) return -1;
+        return parent[n];
+    }
+
+    /**
+     * Returns the link from the parent of a node to the node.
+     *
+     * @param n The node id
+     * @return Index of the link (see Map.getOutOffset), or -1 if the node has no parent
+     */
+    public int getParentLink(int n) {
+        if (stamp[n] != generation) return -1;
+        return parentLink[n];
+    }
+
+    /**
+     * Marks a node as being in the open list and sets its parent and actual cost.
+     *
+     * @param n    The node id
+     * @param p    The parent node id, or -1 for none
+     * @param link Index of the link from the parent, or -1 for none
+     * @param cost The actual cost from the start node
+     */
+    public void open(int n, int p, int link, double cost) {
+        stamp[n] = generation;
+        state[n] = OPEN;
+        parent[n] = p;
+        parentLink[n] = link;
+        actual[n] = cost;
+    }
+
+    /**
+     * Marks a node as being in the closed list.
+     *
+     * @param n The node id
+     */
+    public void close(int n) {
+        if (stamp[n] != generation) {
+            open(n, -1, -1, 0);
+        }
+        state[n] = CLOSED;
+    }
+
+    /**
+     * Returns the priority queue open list, emptied and ready for a new search.
+     *
+     * @param lifo True if nodes with equal priority shall be returned last added first,
+     *             false if first added first
+     * @return The priority queue
+     */
+    public NodeHeap getHeap(boolean lifo) {
+        heap.reset(actual.length, lifo);
+        return heap;
+    }
+
+    /**
+     * Returns the FIFO/LIFO open list, emptied and ready for a new search.
+     *
+     * @return The queue
+     */
+    public NodeQueue getQueue() {
+        queue.reset(actual.length);
+        return queue;
+    }
+}
@@ -42,8 +42,8 @@ public class SearchToolbox extends JApplet {
         JFrame frame = new JFrame("Search Toolbox");
         frame.setSize(750, 450);
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-        frame.getContentPane().setLayout(new FlowLayout());
-        frame.getContentPane().add(new GUI());
+        frame.getContentPane().setLayout(new BorderLayout());
+        frame.getContentPane().add(new GUI(), BorderLayout.CENTER);
         frame.setVisible(true);
     }
 }
@@ -0,0 +1,352 @@
+import java.util.Vector;
+
+/**
+ * Uniform grid index of objects by their bounding box, used to find the nodes
+ * and links of a map in an area without looking at all of them. Each object
+ * is kept in every grid cell its box overlaps, and the cells are stored in a
+ * hash table, so coordinates don't need to be known in advance and only the
+ * cells in use take memory. Objects whose box overlaps too many cells are
+ * kept in a separate list that is checked by every search instead.
+ * <p>
+ * Boxes are given in map coordinates, with both corners included.
+ *
+ * @author Li Xiao
+ */
+public class SpatialGrid<T> {
+    /**
+     * Most cells an object is added to before it is kept in the list of
+     * large objects
+     */
+    private static final int MAX_CELLS = 64;
+
+    /**
+     * Width and height of a cell in map coordinates
+     */
+    private final int cellSize;
+    /**
+     * Cell keys (the packed cell coordinates), indexed by hash slot
+     */
+    private long[] keys = new long[16];
+    /**
+     * The objects in each cell and their boxes (x1, y1, x2, y2). Null for
+     * empty slots.
+     */
+    private Object[][] items = new Object[16][];
+    private int[][] boxes = new int[16][];
+    private int[] sizes = new int[16];
+    /**
+     * Number of slots in use
+     */
+    private int noCells = 0;
+    /**
+     * Objects overlapping more than MAX_CELLS cells, and their boxes
+     */
+    private Object[] large = new Object[4];
+    private int[] largeBoxes = new int[16];
+    private int noLarge = 0;
+    /**
+     * Number of objects in the grid
+     */
+    private int size = 0;
+    /**
+     * Box around all objects added since the grid was created or cleared.
+     * It is not made smaller when objects are removed.
+     */
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+
+    /**
+     * Creates a new empty grid.
+     *
+     * @param cellSize Width and height of a cell in map coordinates
+     */
+    public SpatialGrid(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Returns the number of objects in the grid.
+     *
+     * @return Number of objects
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all objects from the grid.
+     */
+    public void clear() {
+        keys = new long[16];
+        items = new Object[16][];
+        boxes = new int[16][];
+        sizes = new int[16];
+        noCells = 0;
+        large = new Object[4];
+        largeBoxes = new int[16];
+        noLarge = 0;
+        size = 0;
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Checks if all objects in the grid are inside an area, in which case
+     * the caller can use its own list of the objects instead of finding them.
+     * May return false when objects have been removed even if they are.
+     *
+     * @param x1 Lowest x-coordinate of the area
+     * @param y1 Lowest y-coordinate of the area
+     * @param x2 Highest x-coordinate of the area
+     * @param y2 Highest y-coordinate of the area
+     * @return True if all objects are inside the area
+     */
+    public boolean isAllInside(int x1, int y1, int x2, int y2) {
+        return x1 <= minX && y1 <= minY && x2 >= maxX && y2 >= maxY;
+    }
+
+    /**
+     * Adds an object to the grid.
+     *
+     * @param item The object
+     * @param x1   Lowest x-coordinate of the box
+     * @param y1   Lowest y-coordinate of the box
+     * @param x2   Highest x-coordinate of the box
+     * @param y2   Highest y-coordinate of the box
+     */
+    public void add(T item, int x1, int y1, int x2, int y2) {
+        size++;
+        minX = Math.min(minX, x1);
+        minY = Math.min(minY, y1);
+        maxX = Math.max(maxX, x2);
+        maxY = Math.max(maxY, y2);
+        int cx1 = cell(x1);
+        int cy1 = cell(y1);
+        int cx2 = cell(x2);
+        int cy2 = cell(y2);
+        if (((long) cx2 - cx1 + 1) * ((long) cy2 - cy1 + 1) > MAX_CELLS) {
+            if (noLarge == large.length) {
+                large = grow(large, noLarge * 2);
+                largeBoxes = grow(largeBoxes, noLarge * 8);
+            }
+            large[noLarge] = item;
+            setBox(largeBoxes, noLarge, x1, y1, x2, y2);
+            noLarge++;
+            return;
+        }
+
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cy = cy1; cy <= cy2; cy++) {
+                int i = slot(cx, cy, true);
+                if (sizes[i] == items[i].length) {
+                    items[i] = grow(items[i], sizes[i] * 2);
+                    boxes[i] = grow(boxes[i], sizes[i] * 8);
+                }
+                items[i][sizes[i]] = item;
+                setBox(boxes[i], sizes[i], x1, y1, x2, y2);
+                sizes[i]++;
+            }
+        }
+    }
+
+    /**
+     * Removes an object from the grid. The box must be the same as when the
+     * object was added.
+     *
+     * @param item The object
+     * @param x1   Lowest x-coordinate of the box
+     * @param y1   Lowest y-coordinate of the box
+     * @param x2   Highest x-coordinate of the box
+     * @param y2   Highest y-coordinate of the box
+     * @return True if the object was removed, false if it was not found
+     */
+    public boolean remove(T item, int x1, int y1, int x2, int y2) {
+        int cx1 = cell(x1);
+        int cy1 = cell(y1);
+        int cx2 = cell(x2);
+        int cy2 = cell(y2);
+        if (((long) cx2 - cx1 + 1) * ((long) cy2 - cy1 + 1) > MAX_CELLS) {
+            for (int j = 0; j < noLarge; j++) {
+                if (large[j] == item) {
+                    noLarge--;
+                    large[j] = large[noLarge];
+                    System.arraycopy(largeBoxes, noLarge * 4, largeBoxes, j * 4, 4);
+                    large[noLarge] = null;
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean found = false;
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cy = cy1; cy <= cy2; cy++) {
+                int i = slot(cx, cy, false);
+                if (i < 0) continue;
+                for (int j = 0; j < sizes[i]; j++) {
+                    if (items[i][j] == item) {
+                        int last = --sizes[i];
+                        items[i][j] = items[i][last];
+                        System.arraycopy(boxes[i], last * 4, boxes[i], j * 4, 4);
+                        items[i][last] = null;
+                        found = true;
+                        break;
+                    }
+                }
+            }
+        }
+        if (found) size--;
+        return found;
+    }
+
+    /**
+     * Finds the objects whose box overlaps an area. Each object is added to
+     * the result once.
+     *
+     * @param x1     Lowest x-coordinate of the area
+     * @param y1     Lowest y-coordinate of the area
+     * @param x2     Highest x-coordinate of the area
+     * @param y2     Highest y-coordinate of the area
+     * @param result The objects found are added to this list
+     */
+    @SuppressWarnings("unchecked")
+    public void find(int x1, int y1, int x2, int y2, Vector<T> result) {
+        for (int j = 0; j < noLarge; j++) {
+            if (overlaps(largeBoxes, j, x1, y1, x2, y2)) {
+                result.add((T) large[j]);
+            }
+        }
+
+        int cx1 = cell(x1);
+        int cy1 = cell(y1);
+        int cx2 = cell(x2);
+        int cy2 = cell(y2);
+        if (((long) cx2 - cx1 + 1) * ((long) cy2 - cy1 + 1) > noCells) {
+            //The area covers more cells than are in use, so look at the
+            //cells in use instead of all cells in the area
+            for (int i = 0; i < keys.length; i++) {
+                if (items[i] != null) {
+                    find(i, (int) (keys[i] >> 32), (int) keys[i], x1, y1, x2, y2, cx1, cy1, result);
+                }
+            }
+            return;
+        }
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cy = cy1; cy <= cy2; cy++) {
+                int i = slot(cx, cy, false);
+                if (i >= 0) {
+                    find(i, cx, cy, x1, y1, x2, y2, cx1, cy1, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the objects in a cell that overlap an area to a list. An object in
+     * several cells is only added from the first of its cells in the area.
+     */
+    @SuppressWarnings("unchecked")
+    private void find(int i, int cx, int cy, int x1, int y1, int x2, int y2, int cx1, int cy1, Vector<T> result) {
+        int[] box = boxes[i];
+        for (int j = 0; j < sizes[i]; j++) {
+            if (!overlaps(box, j, x1, y1, x2, y2)) continue;
+            int firstX = Math.max(cell(box[j * 4]), cx1);
+            int firstY = Math.max(cell(box[j * 4 + 1]), cy1);
+            if (cx == firstX && cy == firstY) {
+                result.add((T) items[i][j]);
+            }
+        }
+    }
+
+    private static boolean overlaps(int[] box, int j, int x1, int y1, int x2, int y2) {
+        return box[j * 4] <= x2 && box[j * 4 + 2] >= x1 && box[j * 4 + 1] <= y2 && box[j * 4 + 3] >= y1;
+    }
+
+    private static void setBox(int[] box, int j, int x1, int y1, int x2, int y2) {
+        box[j * 4] = x1;
+        box[j * 4 + 1] = y1;
+        box[j * 4 + 2] = x2;
+        box[j * 4 + 3] = y2;
+    }
+
+    /**
+     * Returns the cell coordinate of a map coordinate.
+     */
+    private int cell(int c) {
+        //Rounded down, also for negative coordinates
+        return c >= 0 ? c / cellSize : -((-(c + 1)) / cellSize) - 1;
+    }
+
+    /**
+     * Returns the hash slot of a cell.
+     *
+     * @param create True if the cell shall be created if it is not in use
+     * @return The slot, or -1 if the cell is not in use and not created
+     */
+    private int slot(int cx, int cy, boolean create) {
+        long key = ((long) cx << 32) | (cy & 0xffffffffL);
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (items[i] != null) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        if (!create) return -1;
+
+        keys[i] = key;
+        items[i] = new Object[2];
+        boxes[i] = new int[8];
+        sizes[i] = 0;
+        noCells++;
+        if (noCells * 2 > keys.length) {
+            rehash(keys.length * 2);
+            return slot(cx, cy, false);
+        }
+        return i;
+    }
+
+    private void rehash(int n) {
+        long[] oldKeys = keys;
+        Object[][] oldItems = items;
+        int[][] oldBoxes = boxes;
+        int[] oldSizes = sizes;
+        keys = new long[n];
+        items = new Object[n][];
+        boxes = new int[n][];
+        sizes = new int[n];
+        int mask = n - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldItems[j] == null) continue;
+            int i = hash(oldKeys[j]) & mask;
+            while (items[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            items[i] = oldItems[j];
+            boxes[i] = oldBoxes[j];
+            sizes[i] = oldSizes[j];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static Object[] grow(Object[] a, int n) {
+        Object[] b = new Object[Math.max(n, 2)];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static int[] grow(int[] a, int n) {
+        int[] b = new int[Math.max(n, 8)];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Bounded queue of the progress of a search, used to pass it from the thread
+ * running the search to the GUI. The search adds the links it visits (as the
+ * search listener) and the number of visited nodes after each step, and the
+ * GUI takes all of them at once when it draws the next frame. When the queue
+ * is full, the search waits until the GUI has taken the links, so a fast
+ * search can't get far ahead of what is shown.
+ *
+ * @author Li Xiao
+ */
+public class StepQueue implements SearchListener {
+    /**
+     * Number of links the queue holds by default
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+    /**
+     * The visited links as a ring buffer
+     */
+    private final int[] links;
+    private int head = 0;
+    private int size = 0;
+    /**
+     * Number of visited nodes after the last step
+     */
+    private int noVisited = 0;
+    /**
+     * True when the search is ready
+     */
+    private boolean finished = false;
+    /**
+     * The path found by the search, null if the search failed
+     */
+    private Path path;
+
+    /**
+     * Creates a new queue with the default capacity.
+     */
+    public StepQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity Number of links the queue holds
+     */
+    public StepQueue(int capacity) {
+        links = new int[capacity];
+    }
+
+    /**
+     * Adds a visited link, waiting while the queue is full.
+     *
+     * @param link Index of the link in the graph (see Graph.getOutOffset)
+     */
+    public synchronized void linkVisited(int link) {
+        while (size == links.length) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        links[(head + size) % links.length] = link;
+        size++;
+    }
+
+    /**
+     * Called by the search thread after each step.
+     *
+     * @param noVisited Number of nodes visited by the search
+     */
+    public synchronized void stepDone(int noVisited) {
+        this.noVisited = noVisited;
+    }
+
+    /**
+     * Called by the search thread when the search is ready, also when it
+     * failed.
+     *
+     * @param noVisited Number of nodes visited by the search
+     * @param path      The path found by the search, null if the search failed
+     */
+    public synchronized void searchDone(int noVisited, Path path) {
+        this.noVisited = noVisited;
+        this.path = path;
+        finished = true;
+    }
+
+    /**
+     * Takes the links in the queue, up to the length of an array.
+     *
+     * @param buf Array the links are copied to
+     * @return Number of links taken
+     */
+    public synchronized int drain(int[] buf) {
+        int n = Math.min(size, buf.length);
+        for (int i = 0; i < n; i++) {
+            buf[i] = links[head];
+            head = (head + 1) % links.length;
+        }
+        size -= n;
+        if (n > 0) {
+            notifyAll();
+        }
+        return n;
+    }
+
+    /**
+     * Returns the number of visited nodes after the last step.
+     *
+     * @return Number of visited nodes
+     */
+    public synchronized int getVisitedCount() {
+        return noVisited;
+    }
+
+    /**
+     * Returns the path found by the search.
+     *
+     * @return The path, or null if the search failed or is not ready
+     */
+    public synchronized Path getPath() {
+        return path;
+    }
+
+    /**
+     * Checks if the search is ready and all links have been taken.
+     *
+     * @return True if the search is ready and the queue is empty
+     */
+    public synchronized boolean isFinished() {
+        return finished && size == 0;
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.Vector;
-
 /**
  * This is the implementation of the Uniform-cost search algorithm for
  * pathfinding.
@@ -8,12 +6,30 @@ import java.util.Vector;
  */
 public class UniformCostSearch extends SearchMethod {
     /**
-     * Initializes a new Uniform-cost search.
+     * Open list as a priority queue ordered by actual cost
+     */
+    private NodeHeap queue;
+
+    /**
+     * Creates a new Uniform-cost search. Call init() to start a search.
      */
     public UniformCostSearch() {
-        //Must be called to reset all variables and
-        //data structures needed for the search.
-        init();
+    }
+
+    /**
+     * Initializes a new search.
+     *
+     * @param graph The graph to find the path in
+     * @param start Start node id
+     * @param end   End node id
+     */
+    public void init(Graph graph, int start, int end) {
+        super.init(graph, start, end);
+
+        //Add start node to open list
+        queue = space.getHeap(false);
+        space.open(start, -1, -1, 0);
+        queue.add(start, 0);
     }
 
     /**
@@ -22,16 +38,21 @@ public class UniformCostSearch extends SearchMethod {
      * @return True when the search is ready, false if not ready.
      */
     public boolean step() {
+        //No path exists if the open list runs out of nodes
+        if (queue.isEmpty()) {
+            return true;
+        }
+
         //Find the next node to visit = the node with the shortest path so far
-        Node n = getNextToVisit();
-        map.setLinkAsVisited(n);
+        int n = getNextToVisit();
+        setLinkAsVisited(n);
         //Move the visited node to the closed list
-        closed.add(n);
+        space.close(n);
         //Increase the visited counter
         noVisited++;
 
         //Check if we are finished
-        if (n.equals(end)) {
+        if (n == end) {
             //Goal node reached!
             path = reconstructPath(n);
             return true;
@@ -39,41 +60,39 @@ public class UniformCostSearch extends SearchMethod {
             //Not finished yet. Keep iterating.
 
             //Find the nodes that are connected to the current node n
-            Vector<Node> connected = getConnectedNodes(n);
-            for (Node c : connected) {
-                //Set parent reference
-                c.parent = n;
+            for (int e = graph.getOutOffset(n); e < graph.getOutOffset(n + 1); e++) {
+                int c = graph.getOutTarget(e);
                 //Calculate the actual cost (path length) of going from
-                //the start node to the current node c.
-                calculateActualCost(c);
+                //the start node to the node c through the current node n.
+                double actual = space.getActual(n) + graph.getOutWeight(e);
 
                 //Check if the node already is in the open or closed lists.
-                //If it is, we have found multiple paths from the start node to 
-                //the current node c. Node c must be updated to contain the
+                //If it is, we have found multiple paths from the start node to
+                //the node c. Node c must be updated to contain the
                 //shortest of the multiple paths.
-                Node no = findInOpen(c);
-                if (no != null) {
-                    //The actual cost of the current node c is lower than the actual cost
-                    //for the previous copy of the node.
-                    if (c.actual < no.actual) {
-                        //Remove the previous copy and add the new node c.
-                        open.remove(no);
-                        open.add(c);
+                byte state = space.getState(c);
+                if (state == SearchSpace.OPEN) {
+                    //The actual cost through node n is lower than the actual cost
+                    //found earlier.
+                    if (actual < space.getActual(c)) {
+                        //Set the new parent and lower the cost in the open list.
+                        space.open(c, n, e, actual);
+                        queue.decreaseKey(c, actual);
                     }
                 }
-                Node nc = findInClosed(c);
-                if (nc != null) {
-                    //The actual cost of the current node c is lower than the actual cost
-                    //for the previous copy of the node.
-                    if (c.actual < nc.actual) {
-                        //Remove the previous copy and add the new node c.
-                        closed.remove(nc);
-                        open.add(c);
+                if (state == SearchSpace.CLOSED) {
+                    //The actual cost through node n is lower than the actual cost
+                    //found earlier.
+                    if (actual < space.getActual(c)) {
+                        //Move the node back from the closed list to the open list.
+                        space.open(c, n, e, actual);
+                        queue.add(c, actual);
                     }
                 }
                 //Node is not found in the open or closed lists, so we add it.
-                if (no == null && nc == null) {
-                    open.add(c);
+                if (state == SearchSpace.UNSEEN) {
+                    space.open(c, n, e, actual);
+                    queue.add(c, actual);
                 }
             }
         }
@@ -84,57 +103,11 @@ public class UniformCostSearch extends SearchMethod {
     /**
      * Returns the best node in the open list. The best node is the node with
      * the shortest actual cost of getting from the start node to the current node.
+     * Among nodes with equal cost, the one added to the open list first is returned.
      *
      * @return The best node in the open list
      */
-    private Node getNextToVisit() {
-        //Pick first node...
-        Node bestNode = open.elementAt(0);
-        //... and calculate its actual cost
-        double bestA = bestNode.actual;
-
-        //Find the best node in the list
-        for (Node n : open) {
-            //Calculate actual cost for current node n
-            double currentA = n.actual;
-            if (currentA < bestA) {
-                //We have a new best node
-                bestA = currentA;
-                bestNode = n;
-            }
-        }
-
-        //Remove the best node from the open list (since we visit/expand it)
-        open.remove(bestNode);
-
-        return bestNode;
-    }
-
-    /**
-     * Calculate the Euclidean distance from node n to the end node
-     * using Pythagoras theorem.
-     *
-     * @param n The node to calculate distance for
-     * @return The Euclidean distance
-     */
-    private double getHeuristic(Node n) {
-        double sqX = Math.pow(end.x - n.x, 2);
-        double sqY = Math.pow(end.y - n.y, 2);
-        double euclidean = Math.sqrt(sqX + sqY);
-        return euclidean;
-    }
-
-    /**
-     * Calculates the actual cost (path length) of going from the start node
-     * to the specified node.
-     *
-     * @param n The current node
-     */
-    private void calculateActualCost(Node n) {
-        //Reconstruct the path by traversing the parent references from the
-        //current node to the start node
-        Path path = reconstructPath(n);
-        //Set the actual cost to the length of the reconstructed path
-        n.actual = path.getLength();
+    private int getNextToVisit() {
+        return queue.poll();
     }
 }
@@ -0,0 +1,159 @@
+/**
+ * The part of the map shown in the map panel, as a scale and an offset from
+ * map coordinates to panel pixels. The view is zoomed around a pixel so the
+ * map position under the mouse stays where it is, and panned in pixels.
+ * <p>
+ * The default view shows the map at 10 pixels per map unit, as the map has
+ * always been drawn, with nodes drawn 2 pixels below their position.
+ *
+ * @author Li Xiao
+ */
+public class Viewport {
+    /**
+     * Pixels per map unit in the default view
+     */
+    public static final double DEFAULT_SCALE = 10;
+    /**
+     * Lowest and highest number of pixels per map unit
+     */
+    public static final double MIN_SCALE = 0.001;
+    public static final double MAX_SCALE = 100;
+
+    /**
+     * Pixels per map unit
+     */
+    private double scale;
+    /**
+     * Pixel position of map position (0, 0)
+     */
+    private double offsetX;
+    private double offsetY;
+    /**
+     * Number of changes to the view, used to find out if the map must be
+     * drawn again
+     */
+    private int noChanges = 0;
+
+    /**
+     * Creates a new viewport with the default view.
+     */
+    public Viewport() {
+        reset();
+    }
+
+    /**
+     * Returns the number of times the view has been changed.
+     *
+     * @return Number of changes
+     */
+    public int getChangeCount() {
+        return noChanges;
+    }
+
+    /**
+     * Returns the scale.
+     *
+     * @return Pixels per map unit
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the pixel x-coordinate of a map position.
+     *
+     * @param x Map x-coordinate
+     * @return Pixel x-coordinate
+     */
+    public int toPanelX(double x) {
+        return (int) Math.round(x * scale + offsetX);
+    }
+
+    /**
+     * Returns the pixel y-coordinate of a map position.
+     *
+     * @param y Map y-coordinate
+     * @return Pixel y-coordinate
+     */
+    public int toPanelY(double y) {
+        return (int) Math.round(y * scale + offsetY);
+    }
+
+    /**
+     * Returns the map x-coordinate of a pixel.
+     *
+     * @param x Pixel x-coordinate
+     * @return Map x-coordinate
+     */
+    public double toMapX(double x) {
+        return (x - offsetX) / scale;
+    }
+
+    /**
+     * Returns the map y-coordinate of a pixel.
+     *
+     * @param y Pixel y-coordinate
+     * @return Map y-coordinate
+     */
+    public double toMapY(double y) {
+        return (y - offsetY) / scale;
+    }
+
+    /**
+     * Goes back to the default view.
+     */
+    public void reset() {
+        scale = DEFAULT_SCALE;
+        offsetX = 0;
+        offsetY = 2;
+        noChanges++;
+    }
+
+    /**
+     * Moves the view.
+     *
+     * @param dx Pixels to move the map to the right
+     * @param dy Pixels to move the map down
+     */
+    public void pan(double dx, double dy) {
+        offsetX += dx;
+        offsetY += dy;
+        noChanges++;
+    }
+
+    /**
+     * Zooms the view around a pixel. The scale is kept between MIN_SCALE and
+     * MAX_SCALE.
+     *
+     * @param factor Factor to multiply the scale with
+     * @param x      Pixel x-coordinate that stays at the same map position
+     * @param y      Pixel y-coordinate that stays at the same map position
+     */
+    public void zoom(double factor, double x, double y) {
+        double newScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        offsetX = x - (x - offsetX) * newScale / scale;
+        offsetY = y - (y - offsetY) * newScale / scale;
+        scale = newScale;
+        noChanges++;
+    }
+
+    /**
+     * Zooms and pans the view so an area of the map fills a panel.
+     *
+     * @param x1     Lowest map x-coordinate of the area
+     * @param y1     Lowest map y-coordinate of the area
+     * @param x2     Highest map x-coordinate of the area
+     * @param y2     Highest map y-coordinate of the area
+     * @param width  Width of the panel in pixels
+     * @param height Height of the panel in pixels
+     * @param margin Pixels to leave around the area
+     */
+    public void fit(int x1, int y1, int x2, int y2, int width, int height, int margin) {
+        double sx = (double) Math.max(1, width - 2 * margin) / Math.max(1, x2 - x1);
+        double sy = (double) Math.max(1, height - 2 * margin) / Math.max(1, y2 - y1);
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, Math.min(sx, sy)));
+        offsetX = (width - (x2 - x1) * scale) / 2 - x1 * scale;
+        offsetY = (height - (y2 - y1) * scale) / 2 - y1 * scale;
+        noChanges++;
+    }
+}